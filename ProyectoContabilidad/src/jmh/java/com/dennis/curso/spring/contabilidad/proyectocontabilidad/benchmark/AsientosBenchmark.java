@@ -0,0 +1,62 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.benchmark;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alta de un asiento de 4 partidas: validacion de cuentas, cuadre y ajuste de saldos.
+ * Corre dentro de una transaccion que se revierte, asi el libro no crece entre iteraciones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsientosBenchmark {
+
+    private AsientoService asientos;
+    private TransactionTemplate tx;
+    private AsientoRequest req;
+
+    @Setup(Level.Trial)
+    public void preparar(ContextoLibro libro) {
+        asientos = libro.bean(AsientoService.class);
+        tx = new TransactionTemplate(libro.bean(PlatformTransactionManager.class));
+
+        req = new AsientoRequest();
+        req.fecha = LocalDate.of(2025, 6, 30);
+        req.descripcion = "Venta de contado";
+        req.partidas = List.of(
+                partida("1101", "1500.00", "0"),
+                partida("110301", "240.00", "0"),
+                partida("5101", "0", "1500.00"),
+                partida("2101", "0", "240.00"));
+    }
+
+    @Benchmark
+    public Asiento crear() {
+        return tx.execute(status -> {
+            Asiento a = asientos.crear(req);
+            status.setRollbackOnly();
+            return a;
+        });
+    }
+
+    private static AsientoRequest.PartidaDTO partida(String cuenta, String debe, String haber) {
+        AsientoRequest.PartidaDTO p = new AsientoRequest.PartidaDTO();
+        p.cuentaId = cuenta;
+        p.debe = new BigDecimal(debe);
+        p.haber = new BigDecimal(haber);
+        return p;
+    }
+}
@@ -0,0 +1,91 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.benchmark;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.ProyectoContabilidadApplication;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prueba de carga por HTTP: muchos clientes pidiendo reportes que recorren el libro y unos pocos
+ * leyendo el catalogo al mismo tiempo. Mode.SampleTime da los percentiles (p0.99) de cada grupo;
+ * se compara con y sin hilos virtuales y con y sin el bulkhead por clase de endpoint.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="CargaBenchmark -p partidas=200000"
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class CargaBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Servidor {
+        @Param({"false", "true"})
+        public boolean virtuales;
+
+        @Param({"false", "true"})
+        public boolean bulkhead;
+
+        @Param({"100000"})
+        public long partidas;
+
+        ConfigurableApplicationContext ctx;
+        HttpClient http;
+        String base;
+        VersionLibro version;
+
+        @Setup(Level.Trial)
+        public void iniciar() {
+            ctx = new SpringApplicationBuilder(ProyectoContabilidadApplication.class)
+                    .profiles("benchmark")
+                    .run("--spring.main.web-application-type=servlet", // como argumentos, le ganan al perfil
+                            "--server.port=0",
+                            "--spring.threads.virtual.enabled=" + virtuales,
+                            "--app.bulkhead.habilitado=" + bulkhead);
+            new GeneradorLibro(42).cargar(ctx.getBean(JdbcTemplate.class), partidas);
+            ctx.getBean(SaldoCuentaService.class).reconstruir();
+            ctx.getBean(CatalogoCuentas.class).recargar();
+            version = ctx.getBean(VersionLibro.class);
+            base = "http://localhost:" + ctx.getEnvironment().getProperty("local.server.port");
+            http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() {
+            ctx.close();
+        }
+
+        int get(String ruta) throws IOException, InterruptedException {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(base + ruta)).GET().build();
+            return http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode(); // 503 tambien cuenta como respuesta
+        }
+    }
+
+    @Benchmark
+    @Group("mixto")
+    @GroupThreads(16)
+    public int reporte(Servidor s) throws Exception {
+        s.version.cambio(); // sin cache: cada pedido recorre las partidas del rango
+        return s.get("/api/reportes/balance-comprobacion?desde=2023-01-01&hasta=2025-12-31");
+    }
+
+    @Benchmark
+    @Group("mixto")
+    @GroupThreads(4)
+    public int catalogo(Servidor s) throws Exception {
+        return s.get("/api/cuentas");
+    }
+}
@@ -0,0 +1,56 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.benchmark;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.ProyectoContabilidadApplication;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.InstantaneaLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Levanta la aplicacion contra H2 (perfil benchmark) y carga el libro sintetico una vez por trial.
+ * Con -p partidas=5000000 se prueba el tamaño grande; el valor por defecto es para correr rapido.
+ */
+@State(Scope.Benchmark)
+public class ContextoLibro {
+
+    @Param({"10000", "100000"})
+    public long partidas;
+
+    @Param({"42"})
+    public long semilla;
+
+    /** true = los reportes por rango leen la foto columnar del libro en vez de la BD */
+    @Param({"false"})
+    public boolean instantanea;
+
+    public ConfigurableApplicationContext ctx;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        ctx = new SpringApplicationBuilder(ProyectoContabilidadApplication.class)
+                .profiles("benchmark")
+                .run("--app.instantanea.habilitada=" + instantanea,
+                        "--app.instantanea.archivo=target/benchmark/libro.col");
+        new GeneradorLibro(semilla).cargar(ctx.getBean(JdbcTemplate.class), partidas);
+        ctx.getBean(SaldoCuentaService.class).reconstruir();
+        ctx.getBean(CatalogoCuentas.class).recargar();
+        ctx.getBean(InstantaneaLibro.class).reconstruir(); // el generador escribe por JDBC, sin pasar por el delta
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        ctx.close();
+    }
+
+    public <T> T bean(Class<T> tipo) {
+        return ctx.getBean(tipo);
+    }
+}
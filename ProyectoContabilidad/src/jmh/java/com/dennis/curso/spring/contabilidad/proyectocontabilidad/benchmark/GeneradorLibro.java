@@ -0,0 +1,159 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Genera un catalogo de cuentas y un libro con asientos cuadrados, siempre igual para la misma semilla.
+ * El catalogo tiene 4 niveles (1, 11, 1101, 110101) y los asientos tienen de 2 a 6 partidas
+ * repartidas en tres años, con fechas crecientes como en un libro real.
+ */
+public class GeneradorLibro {
+
+    private static final String[][] GRUPOS = {
+            {"1", "Activo", "11", "12", "13"},
+            {"2", "Pasivo", "21", "22"},
+            {"3", "Capital", "31"},
+            {"4", "Costos y gastos", "41", "42", "43"},
+            {"5", "Ingresos", "51", "52"}
+    };
+    private static final int CUENTAS_POR_SUBGRUPO = 12;  // nivel 1101..1112
+    private static final int SUBCUENTAS = 4;             // la mitad de ellas tiene 110101..110104
+    private static final LocalDate INICIO = LocalDate.of(2023, 1, 1);
+    private static final int DIAS = 3 * 365;
+    private static final int LOTE = 1000;
+
+    public record CuentaGenerada(String id, String nombre, String tipo) {
+    }
+
+    private final long semilla;
+
+    public GeneradorLibro(long semilla) {
+        this.semilla = semilla;
+    }
+
+    public List<CuentaGenerada> catalogo() {
+        List<CuentaGenerada> out = new ArrayList<>();
+        for (String[] g : GRUPOS) {
+            out.add(new CuentaGenerada(g[0], g[1], g[1]));
+            for (int s = 2; s < g.length; s++) {
+                String sub = g[s];
+                out.add(new CuentaGenerada(sub, g[1] + " " + sub, g[1]));
+                for (int c = 1; c <= CUENTAS_POR_SUBGRUPO; c++) {
+                    String cuenta = sub + String.format("%02d", c);
+                    out.add(new CuentaGenerada(cuenta, g[1] + " " + cuenta, g[1]));
+                    if (c % 2 == 0) continue;
+                    for (int d = 1; d <= SUBCUENTAS; d++) {
+                        String detalle = cuenta + String.format("%02d", d);
+                        out.add(new CuentaGenerada(detalle, g[1] + " " + detalle, g[1]));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Cuentas que reciben movimientos: las hojas y, de vez en cuando, una cuenta padre como en datos reales */
+    private static List<String> imputables(List<CuentaGenerada> catalogo) {
+        List<String> ids = new ArrayList<>();
+        for (CuentaGenerada c : catalogo) {
+            if (c.id().length() >= 4) ids.add(c.id());
+        }
+        return ids;
+    }
+
+    /**
+     * Borra lo que haya y carga el catalogo y aproximadamente {@code partidas} partidas.
+     * Los ids se insertan explicitos; las secuencias quedan por encima para que Hibernate siga numerando.
+     * Los saldos por cuenta y el saldo acumulado de las partidas los arma despues SaldoCuentaService.reconstruir().
+     * Devuelve la cantidad real de partidas insertadas.
+     */
+    public long cargar(JdbcTemplate jdbc, long partidas) {
+        SplittableRandom rnd = new SplittableRandom(semilla);
+        jdbc.update("DELETE FROM saldos_cuenta");
+        jdbc.update("DELETE FROM partidas");
+        jdbc.update("DELETE FROM asientos");
+        jdbc.update("DELETE FROM cuentas");
+
+        List<CuentaGenerada> catalogo = catalogo();
+        jdbc.batchUpdate("INSERT INTO cuentas (id, nombre, tipo, activo) VALUES (?, ?, ?, ?)", catalogo, LOTE,
+                (ps, c) -> {
+                    ps.setString(1, c.id());
+                    ps.setString(2, c.nombre());
+                    ps.setString(3, c.tipo());
+                    ps.setBoolean(4, true);
+                });
+        List<String> cuentas = imputables(catalogo);
+
+        List<Object[]> asientos = new ArrayList<>(LOTE);
+        List<Object[]> filas = new ArrayList<>(LOTE * 6);
+        long asientoId = 0;
+        long partidaId = 0;
+        long totalAsientos = Math.max(1, partidas / 4); // 4 partidas por asiento en promedio
+
+        for (long i = 0; i < totalAsientos; i++) {
+            asientoId++;
+            Date fecha = Date.valueOf(INICIO.plusDays(i * DIAS / totalAsientos));
+            asientos.add(new Object[]{asientoId, fecha, "Asiento sintetico " + asientoId});
+
+            int lineas = 2 + rnd.nextInt(5);
+            int debitos = 1 + rnd.nextInt(lineas - 1);
+            long[] debe = repartir(rnd, 100 + rnd.nextLong(1_000_000), debitos);
+            long total = 0;
+            for (long d : debe) total += d;
+            long[] haber = repartir(rnd, total, lineas - debitos);
+
+            for (long d : debe) {
+                filas.add(new Object[]{++partidaId, asientoId, elegir(rnd, cuentas), centavos(d), BigDecimal.ZERO, fecha});
+            }
+            for (long h : haber) {
+                filas.add(new Object[]{++partidaId, asientoId, elegir(rnd, cuentas), BigDecimal.ZERO, centavos(h), fecha});
+            }
+
+            if (asientos.size() == LOTE) {
+                volcar(jdbc, asientos, filas);
+            }
+        }
+        volcar(jdbc, asientos, filas);
+
+        // margen sobre el ultimo id por el optimizador pooled de Hibernate (allocationSize 50)
+        jdbc.execute("ALTER SEQUENCE asientos_seq RESTART WITH " + (asientoId + 1000));
+        jdbc.execute("ALTER SEQUENCE partidas_seq RESTART WITH " + (partidaId + 1000));
+        return partidaId;
+    }
+
+    private static void volcar(JdbcTemplate jdbc, List<Object[]> asientos, List<Object[]> filas) {
+        if (asientos.isEmpty()) return;
+        jdbc.batchUpdate("INSERT INTO asientos (id, fecha, descripcion) VALUES (?, ?, ?)", asientos);
+        jdbc.batchUpdate("INSERT INTO partidas (id, asiento_id, cuenta_id, debe, haber, fecha) VALUES (?, ?, ?, ?, ?, ?)", filas);
+        asientos.clear();
+        filas.clear();
+    }
+
+    /** Parte un total en n montos positivos que suman exactamente el total */
+    private static long[] repartir(SplittableRandom rnd, long total, int n) {
+        long[] out = new long[n];
+        long resto = total;
+        for (int i = 0; i < n - 1; i++) {
+            long max = resto - (n - 1 - i);
+            out[i] = 1 + rnd.nextLong(Math.max(1, max / 2));
+            resto -= out[i];
+        }
+        out[n - 1] = resto;
+        return out;
+    }
+
+    private static String elegir(SplittableRandom rnd, List<String> cuentas) {
+        return cuentas.get(rnd.nextInt(cuentas.size()));
+    }
+
+    private static BigDecimal centavos(long c) {
+        return BigDecimal.valueOf(c, 2);
+    }
+}
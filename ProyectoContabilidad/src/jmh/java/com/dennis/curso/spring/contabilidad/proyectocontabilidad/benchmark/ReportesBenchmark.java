@@ -0,0 +1,52 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.benchmark;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResumenReportes;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.ReportesService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mayorizacion + deteccion de padres + los tres estados, sin la cache por version.
+ * Asignacion con -prof gc y 100k partidas (JDK 21): resumenDesdeSaldos 533 KB/op con los reportes como
+ * {@code Map<String,Object>} y 308 KB/op con los records; resumenDeUnRango 540 -> 310 KB/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportesBenchmark {
+
+    private static final RangoFechas AÑO_2024 = new RangoFechas(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+    private ReportesService reportes;
+    private VersionLibro version;
+
+    @Setup(Level.Trial)
+    public void preparar(ContextoLibro libro) {
+        reportes = libro.bean(ReportesService.class);
+        version = libro.bean(VersionLibro.class);
+    }
+
+    @Benchmark
+    public ResumenReportes resumenDesdeSaldos() {
+        version.cambio(); // sin transaccion sube de inmediato, obliga a recalcular
+        return reportes.resumen(RangoFechas.TODO);
+    }
+
+    @Benchmark
+    public ResumenReportes resumenDeUnRango() {
+        version.cambio();
+        return reportes.resumen(AÑO_2024);
+    }
+
+    @Benchmark
+    public ResumenReportes resumenEnCache() {
+        return reportes.resumen(RangoFechas.TODO);
+    }
+}
@@ -0,0 +1,264 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Foto columnar de las partidas en un archivo: una cabecera con la tabla de cuentas y una columna por campo
+ * (id long, cuenta int = posicion en la tabla, fecha int = epoch day, debe y haber long en centavos),
+ * todas en orden de id. Se lee mapeando cada columna en memoria fuera del heap; como son MappedByteBuffer
+ * cada columna llega hasta 2 GB, unos 268 millones de partidas.
+ */
+public final class ArchivoInstantanea {
+
+    private static final int MAGICO = 0x4C494252; // "LIBR"
+    private static final int FORMATO = 2;
+    private static final int FIJO = 4 + 4 + 8 + 8 + 8 + 4; // magico, formato, filas, maxId, versiones, largo de la cabecera
+    static final int SIN_FECHA = Integer.MIN_VALUE;
+
+    private final long maxId;
+    private final long versiones;
+    private final int filas;
+    private final String[] cuentas;
+    private final Map<String, Integer> indices;
+    private final LongBuffer ids;
+    private final IntBuffer cuenta;
+    private final IntBuffer fecha;
+    private final LongBuffer debe;
+    private final LongBuffer haber;
+
+    private ArchivoInstantanea(long maxId, long versiones, int filas, String[] cuentas, LongBuffer ids, IntBuffer cuenta,
+                               IntBuffer fecha, LongBuffer debe, LongBuffer haber) {
+        this.maxId = maxId;
+        this.versiones = versiones;
+        this.filas = filas;
+        this.cuentas = cuentas;
+        this.indices = new HashMap<>(cuentas.length * 2);
+        for (int i = 0; i < cuentas.length; i++) indices.put(cuentas[i], i);
+        this.ids = ids;
+        this.cuenta = cuenta;
+        this.fecha = fecha;
+        this.debe = debe;
+        this.haber = haber;
+    }
+
+    public static ArchivoInstantanea abrir(Path archivo) throws IOException {
+        try (FileChannel ch = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer fijo = ByteBuffer.allocate(FIJO);
+            ch.read(fijo, 0);
+            fijo.flip();
+            if (fijo.remaining() < FIJO || fijo.getInt() != MAGICO || fijo.getInt() != FORMATO) {
+                throw new IOException("No es una instantanea del libro: " + archivo);
+            }
+            long filas = fijo.getLong();
+            long maxId = fijo.getLong();
+            long versiones = fijo.getLong();
+            int cabecera = fijo.getInt();
+            if (filas > Integer.MAX_VALUE / 8) throw new IOException("Instantanea demasiado grande: " + filas);
+            int n = (int) filas;
+
+            ByteBuffer tabla = ByteBuffer.allocate(cabecera - FIJO);
+            ch.read(tabla, FIJO);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(tabla.array()));
+            String[] cuentas = new String[in.readInt()];
+            for (int i = 0; i < cuentas.length; i++) cuentas[i] = in.readUTF();
+
+            // el mapeo sigue valido despues de cerrar el canal
+            long pos = cabecera;
+            LongBuffer ids = ch.map(FileChannel.MapMode.READ_ONLY, pos, 8L * n).asLongBuffer();
+            pos += 8L * n;
+            IntBuffer cuenta = ch.map(FileChannel.MapMode.READ_ONLY, pos, 4L * n).asIntBuffer();
+            pos += 4L * n;
+            IntBuffer fecha = ch.map(FileChannel.MapMode.READ_ONLY, pos, 4L * n).asIntBuffer();
+            pos += 4L * n;
+            LongBuffer debe = ch.map(FileChannel.MapMode.READ_ONLY, pos, 8L * n).asLongBuffer();
+            pos += 8L * n;
+            LongBuffer haber = ch.map(FileChannel.MapMode.READ_ONLY, pos, 8L * n).asLongBuffer();
+            return new ArchivoInstantanea(maxId, versiones, n, cuentas, ids, cuenta, fecha, debe, haber);
+        }
+    }
+
+    public int filas() {
+        return filas;
+    }
+
+    public long maxId() {
+        return maxId;
+    }
+
+    /** Suma de las versiones de los asientos leida antes de recorrer las partidas */
+    public long versiones() {
+        return versiones;
+    }
+
+    public int cantidadCuentas() {
+        return cuentas.length;
+    }
+
+    public String cuenta(int indice) {
+        return cuentas[indice];
+    }
+
+    /** -1 si la cuenta no tenia partidas cuando se tomo la foto */
+    public int indice(String cuentaId) {
+        return indices.getOrDefault(cuentaId, -1);
+    }
+
+    /** Fila de la partida con ese id o -1; busqueda binaria porque las filas estan en orden de id */
+    public int posicion(long id) {
+        int lo = 0;
+        int hi = filas - 1;
+        while (lo <= hi) {
+            int medio = (lo + hi) >>> 1;
+            long v = ids.get(medio);
+            if (v < id) lo = medio + 1;
+            else if (v > id) hi = medio - 1;
+            else return medio;
+        }
+        return -1;
+    }
+
+    public int cuentaEn(int fila) {
+        return cuenta.get(fila);
+    }
+
+    public int fechaEn(int fila) {
+        return fecha.get(fila);
+    }
+
+    public long debeEn(int fila) {
+        return debe.get(fila);
+    }
+
+    public long haberEn(int fila) {
+        return haber.get(fila);
+    }
+
+    /**
+     * Suma por indice de cuenta las filas con fecha en el rango (null = sin limite, como el filtro SQL:
+     * una partida sin fecha solo entra si no hay limites). Lanza ArithmeticException si no entra en un long.
+     */
+    public void sumar(LocalDate desde, LocalDate hasta, long[] sumaDebe, long[] sumaHaber, int[] cuantas) {
+        boolean todo = desde == null && hasta == null;
+        int lo = desde == null ? SIN_FECHA + 1 : dia(desde);
+        int hi = hasta == null ? Integer.MAX_VALUE : dia(hasta);
+        for (int i = 0; i < filas; i++) {
+            if (!todo) {
+                int f = fecha.get(i);
+                if (f < lo || f > hi) continue;
+            }
+            int c = cuenta.get(i);
+            sumaDebe[c] = Math.addExact(sumaDebe[c], debe.get(i));
+            sumaHaber[c] = Math.addExact(sumaHaber[c], haber.get(i));
+            cuantas[c]++;
+        }
+    }
+
+    public static boolean dentro(int fecha, LocalDate desde, LocalDate hasta) {
+        if (desde == null && hasta == null) return true;
+        if (fecha == SIN_FECHA) return false;
+        return (desde == null || fecha >= dia(desde)) && (hasta == null || fecha <= dia(hasta));
+    }
+
+    public static int dia(LocalDate fecha) {
+        return fecha == null ? SIN_FECHA : (int) fecha.toEpochDay();
+    }
+
+    /** Importe en centavos; la columna tiene 2 decimales, si llega otra cosa falla en vez de redondear */
+    public static long centavos(BigDecimal importe) {
+        return importe == null ? 0 : importe.setScale(2).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Arma el archivo a partir de las filas en orden de id. Cada columna va a un temporal al lado del destino
+     * y al terminar se juntan y se reemplaza el destino de una vez, una foto a medio escribir nunca se lee.
+     */
+    public static final class Escritor implements Closeable {
+        private final Path destino;
+        private final long versiones;
+        private final Path[] temporales = new Path[5];
+        private final DataOutputStream[] columnas = new DataOutputStream[5];
+        private final Map<String, Integer> cuentas = new LinkedHashMap<>();
+        private long filas;
+        private long maxId;
+
+        public Escritor(Path destino, long versiones) throws IOException {
+            this.destino = destino;
+            this.versiones = versiones;
+            Path dir = destino.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            for (int i = 0; i < columnas.length; i++) {
+                temporales[i] = Files.createTempFile(dir, destino.getFileName().toString(), ".col" + i);
+                columnas[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporales[i]), 64 * 1024));
+            }
+        }
+
+        public void fila(long id, String cuentaId, LocalDate fecha, BigDecimal debe, BigDecimal haber) {
+            try {
+                int c = cuentas.computeIfAbsent(cuentaId, k -> cuentas.size());
+                columnas[0].writeLong(id);
+                columnas[1].writeInt(c);
+                columnas[2].writeInt(dia(fecha));
+                columnas[3].writeLong(centavos(debe));
+                columnas[4].writeLong(centavos(haber));
+                filas++;
+                maxId = Math.max(maxId, id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public ArchivoInstantanea terminar() throws IOException {
+            for (DataOutputStream c : columnas) c.close();
+
+            ByteArrayOutputStream tabla = new ByteArrayOutputStream();
+            DataOutputStream t = new DataOutputStream(tabla);
+            t.writeInt(cuentas.size());
+            for (String id : cuentas.keySet()) t.writeUTF(id);
+            int cabecera = FIJO + tabla.size();
+            cabecera += (8 - cabecera % 8) % 8; // columnas alineadas a 8 bytes
+
+            Path junto = Files.createTempFile(destino.toAbsolutePath().getParent(), destino.getFileName().toString(), ".tmp");
+            try (FileChannel out = FileChannel.open(junto, StandardOpenOption.WRITE)) {
+                ByteBuffer inicio = ByteBuffer.allocate(cabecera);
+                inicio.putInt(MAGICO).putInt(FORMATO).putLong(filas).putLong(maxId).putLong(versiones).putInt(cabecera).put(tabla.toByteArray());
+                inicio.position(cabecera).flip();
+                while (inicio.hasRemaining()) out.write(inicio);
+                for (Path columna : temporales) {
+                    try (FileChannel in = FileChannel.open(columna, StandardOpenOption.READ)) {
+                        long pos = 0;
+                        long largo = in.size();
+                        while (pos < largo) pos += in.transferTo(pos, largo - pos, out);
+                    }
+                }
+                out.force(true);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(junto);
+                throw e;
+            }
+            Files.move(junto, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return abrir(destino);
+        }
+
+        /** Borra los temporales; se llama siempre, haya terminado bien o no */
+        @Override
+        public void close() throws IOException {
+            for (int i = 0; i < columnas.length; i++) {
+                if (columnas[i] != null) columnas[i].close();
+                if (temporales[i] != null) Files.deleteIfExists(temporales[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.CuentaRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class CatalogoCuentas {
+    //copia en memoria del catalogo de cuentas: casi nunca cambia y se consulta en cada partida
+
+    public record CuentaInfo(String id, String nombre, String tipo, boolean activo) {
+        static CuentaInfo de(Cuenta c) {
+            return new CuentaInfo(c.getId(), c.getNombre(), c.getTipo(), !Boolean.FALSE.equals(c.getActivo()));
+        }
+    }
+
+    private final CuentaRepository cuentaRepo;
+    private final VersionLibro version;
+    private final Map<String, CuentaInfo> cuentas = new ConcurrentHashMap<>();
+    private final JerarquiaCuentas jerarquia = new JerarquiaCuentas();
+    private volatile boolean cargado = false;
+
+    public CatalogoCuentas(CuentaRepository cuentaRepo, VersionLibro version) {
+        this.cuentaRepo = cuentaRepo;
+        this.version = version;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        recargar();
+    }
+
+    /** Vuelve a leer todas las cuentas de la BD */
+    public synchronized void recargar() {
+        Map<String, CuentaInfo> leidas = new HashMap<>();
+        cuentaRepo.findAll().forEach(c -> leidas.put(c.getId(), CuentaInfo.de(c)));
+        cuentas.keySet().retainAll(leidas.keySet());
+        cuentas.putAll(leidas);
+        jerarquia.reemplazarTodo(leidas.keySet());
+        cargado = true;
+        version.cambio();
+    }
+
+    public JerarquiaCuentas jerarquia() {
+        asegurarCargado();
+        return jerarquia;
+    }
+
+    public Optional<CuentaInfo> buscar(String id) {
+        asegurarCargado();
+        return Optional.ofNullable(cuentas.get(id));
+    }
+
+    /**
+     * Resuelve todas las cuentas de un asiento en una sola llamada. Solo va a la BD, con un
+     * unico select, por ids que no estan en memoria (cuentas insertadas por fuera de la app).
+     */
+    public Map<String, CuentaInfo> resolver(Collection<String> ids) {
+        asegurarCargado();
+        Map<String, CuentaInfo> encontradas = new HashMap<>();
+        List<String> faltantes = new ArrayList<>();
+        for (String id : ids) {
+            CuentaInfo info = cuentas.get(id);
+            if (info != null) encontradas.put(id, info);
+            else faltantes.add(id);
+        }
+        if (!faltantes.isEmpty()) {
+            cuentaRepo.findAllById(faltantes).forEach(c -> {
+                CuentaInfo info = CuentaInfo.de(c);
+                cuentas.put(c.getId(), info);
+                jerarquia.agregar(c.getId());
+                encontradas.put(c.getId(), info);
+            });
+        }
+        return encontradas;
+    }
+
+    //se llaman desde CuentaServiceImpl, el cambio se aplica cuando la transaccion confirma
+    public void registrar(Cuenta c) {
+        CuentaInfo info = CuentaInfo.de(c); // se copia ahora, la entidad puede seguir cambiando
+        despuesDelCommit(() -> {
+            cuentas.put(info.id(), info);
+            jerarquia.agregar(info.id());
+        });
+        version.cambio(); // nombres y jerarquia salen en los reportes
+    }
+
+    public void quitar(String id) {
+        despuesDelCommit(() -> {
+            cuentas.remove(id);
+            jerarquia.quitar(id);
+        });
+        version.cambio();
+    }
+
+    private void asegurarCargado() {
+        if (!cargado) recargar(); // por si llega una peticion antes de ApplicationReadyEvent
+    }
+
+    private static void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.config.Hilos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.LibroCambiado;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Partida;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository.Huella;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reportes por rango sin ir a la BD: una foto del libro en disco (ArchivoInstantanea, mapeada fuera del heap)
+ * mas un delta en memoria con lo que se confirmo despues de la foto. La foto se rehace cada cierto tiempo
+ * si hubo cambios. Al arrancar se reusa la del disco si la huella (cantidad de partidas, mayor id y suma de
+ * versiones de los asientos) coincide con la BD, asi un reinicio no tiene que leer todo el libro.
+ * Los cambios se conocen por el LibroCambiado que publica SaldoCuentaService.ajustar, por eso vale con una
+ * sola instancia de la aplicacion (igual que VersionLibro); un cambio hecho por fuera se detecta en la
+ * siguiente revision de la huella.
+ */
+@Component
+public class InstantaneaLibro {
+
+    private static final Logger log = LoggerFactory.getLogger(InstantaneaLibro.class);
+
+    private final MovimientoJdbcRepository movimientoRepo;
+    private final CatalogoCuentas catalogo;
+    private final boolean habilitada;
+    private final Path archivo;
+    private final Duration intervalo;
+    private final int maximoDelta;
+    private final ScheduledExecutorService executor;
+    private final ReentrantLock escritura = new ReentrantLock(); // una foto a la vez
+
+    // la foto y el delta cambian juntos, siempre bajo el lock de this
+    private volatile ArchivoInstantanea actual; // null = no hay foto, los reportes van a la BD
+    private final Map<Long, Movimiento> cambios = new HashMap<>(); // por id de partida, el estado confirmado mas nuevo
+    private long registros;                                         // numera los cambios en orden de llegada
+    private long generacion;                                        // sube al invalidar
+
+    /** Como quedo una partida despues de la foto; cuentaId null = borrada */
+    private record Movimiento(String cuentaId, int fecha, long debe, long haber, long registro) {
+        boolean borrada() {
+            return cuentaId == null;
+        }
+    }
+
+    public InstantaneaLibro(MovimientoJdbcRepository movimientoRepo, CatalogoCuentas catalogo,
+                            @Value("${app.instantanea.habilitada:false}") boolean habilitada,
+                            @Value("${app.instantanea.archivo:${java.io.tmpdir}/contabilidad/libro.col}") Path archivo,
+                            @Value("${app.instantanea.intervalo:PT15M}") Duration intervalo,
+                            @Value("${app.instantanea.maximo-delta:100000}") int maximoDelta) {
+        this.movimientoRepo = movimientoRepo;
+        this.catalogo = catalogo;
+        this.habilitada = habilitada;
+        this.archivo = archivo;
+        this.intervalo = intervalo;
+        this.maximoDelta = maximoDelta;
+        this.executor = habilitada
+                ? Executors.newSingleThreadScheduledExecutor(Hilos.daemon("instantanea-libro"))
+                : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void iniciar() {
+        if (!habilitada) return;
+        executor.execute(this::arrancar);
+        executor.scheduleWithFixedDelay(this::revisar, intervalo.toMillis(), intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void cerrar() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    /** Arranque en caliente: la foto del disco sirve si la BD tiene las mismas partidas */
+    private void arrancar() {
+        escritura.lock();
+        try {
+            if (Files.exists(archivo)) {
+                long[] inicio = inicio();
+                ArchivoInstantanea guardada = ArchivoInstantanea.abrir(archivo);
+                Huella huella = movimientoRepo.huella();
+                if (coincide(guardada, huella) && adoptar(guardada, inicio)) {
+                    log.info("Instantanea del libro reusada: {} partidas", guardada.filas());
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se pudo leer la instantanea {}, se rehace", archivo, e);
+        } finally {
+            escritura.unlock();
+        }
+        reconstruir();
+    }
+
+    /** Rehace la foto si hubo cambios desde la anterior o si la BD cambio por fuera */
+    private void revisar() {
+        try {
+            boolean hayCambios;
+            synchronized (this) {
+                hayCambios = actual == null || !cambios.isEmpty();
+            }
+            if (!hayCambios) {
+                ArchivoInstantanea a = actual;
+                hayCambios = a == null || !coincide(a, movimientoRepo.huella());
+            }
+            if (hayCambios) reconstruir();
+        } catch (RuntimeException e) {
+            log.warn("Fallo la revision de la instantanea del libro", e); // sin esto el scheduler deja de correr
+        }
+    }
+
+    /**
+     * Escribe una foto nueva y la pone en uso. Los cambios anotados antes de empezar a leer ya estan en la foto;
+     * los que llegaron mientras se leia se quedan en el delta salvo que la foto ya tenga ese mismo estado.
+     * Si ya se esta escribiendo una, espera a que termine y escribe otra.
+     */
+    public void reconstruir() {
+        if (!habilitada) return;
+        escritura.lock();
+        try {
+            for (int intento = 0; intento < 3; intento++) {
+                long[] inicio = inicio();
+                ArchivoInstantanea nueva = escribir();
+                if (!adoptar(nueva, inicio)) continue; // se invalido mientras se leia
+                log.info("Instantanea del libro escrita: {} partidas, {} cuentas", nueva.filas(), nueva.cantidadCuentas());
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se pudo escribir la instantanea del libro", e);
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    private static boolean coincide(ArchivoInstantanea a, Huella huella) {
+        return a.filas() == huella.partidas() && a.maxId() == huella.maxId() && a.versiones() == huella.versiones();
+    }
+
+    /** Generacion y numero de registro al empezar a leer la BD */
+    private synchronized long[] inicio() {
+        return new long[]{generacion, registros};
+    }
+
+    /**
+     * Pone la foto en uso y concilia el delta: un cambio anotado antes de empezar a leer se confirmo antes
+     * y la lectura lo vio; uno posterior sale solo si la foto ya lo tiene. false si hubo una invalidacion.
+     */
+    private synchronized boolean adoptar(ArchivoInstantanea nueva, long[] inicio) {
+        if (inicio[0] != generacion) return false;
+        cambios.entrySet().removeIf(e -> e.getValue().registro() < inicio[1] || igualALaFoto(nueva, e.getKey(), e.getValue()));
+        actual = nueva;
+        return true;
+    }
+
+    private static boolean igualALaFoto(ArchivoInstantanea a, long id, Movimiento m) {
+        int fila = a.posicion(id);
+        if (m.borrada()) return fila < 0;
+        return fila >= 0 && a.cuenta(a.cuentaEn(fila)).equals(m.cuentaId()) && a.fechaEn(fila) == m.fecha()
+                && a.debeEn(fila) == m.debe() && a.haberEn(fila) == m.haber();
+    }
+
+    private ArchivoInstantanea escribir() throws IOException {
+        Huella huella = movimientoRepo.huella();
+        try (ArchivoInstantanea.Escritor escritor = new ArchivoInstantanea.Escritor(archivo, huella.versiones())) {
+            movimientoRepo.recorrerPartidas(huella.maxId(), rs -> {
+                java.sql.Date fecha = rs.getDate("fecha");
+                escritor.fila(rs.getLong("id"), rs.getString("cuenta_id"),
+                        fecha == null ? null : fecha.toLocalDate(), rs.getBigDecimal("debe"), rs.getBigDecimal("haber"));
+            });
+            return escritor.terminar();
+        }
+    }
+
+    /**
+     * Anota el cambio de un asiento para el delta al confirmar: las anteriores que ya no estan quedan borradas y
+     * las nuevas con su estado actual (una edicion en el lugar conserva el id). Va antes que la version.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    @Order(LibroCambiado.INSTANTANEA)
+    void libroCambiado(LibroCambiado cambio) {
+        if (!habilitada) return;
+        aplicar(cambio.anteriores(), cambio.nuevas());
+    }
+
+    private void aplicar(List<Partida> quitar, List<Partida> agregar) {
+        boolean reconstruir;
+        synchronized (this) {
+            for (Partida p : quitar) {
+                if (p.getId() == null) {
+                    invalidar();
+                    return;
+                }
+                cambios.put(p.getId(), new Movimiento(null, 0, 0, 0, registros++));
+            }
+            for (Partida p : agregar) {
+                if (p.getId() == null || p.getCuenta() == null || p.getAsiento() == null) {
+                    invalidar();
+                    return;
+                }
+                cambios.put(p.getId(), new Movimiento(p.getCuenta().getId(),
+                        ArchivoInstantanea.dia(p.getAsiento().getFecha()),
+                        ArchivoInstantanea.centavos(p.getDebe()), ArchivoInstantanea.centavos(p.getHaber()), registros++));
+            }
+            reconstruir = cambios.size() > maximoDelta;
+        }
+        if (reconstruir) executor.execute(this::reconstruir);
+    }
+
+    /** No se sabe que cambio: se deja de usar la foto hasta escribir otra */
+    private void invalidar() {
+        actual = null;
+        cambios.clear();
+        generacion++;
+        executor.execute(this::reconstruir);
+    }
+
+    /**
+     * Totales por cuenta del rango leyendo la foto mas el delta, iguales a los del GROUP BY sobre partidas
+     * (solo cuentas con partidas en el rango, ordenadas por id). Vacio si no hay foto o no entra en centavos.
+     */
+    public Optional<List<TotalCuenta>> totales(LocalDate desde, LocalDate hasta) {
+        if (!habilitada) return Optional.empty();
+        ArchivoInstantanea a;
+        Map<Long, Movimiento> delta;
+        synchronized (this) {
+            a = actual;
+            if (a == null) return Optional.empty();
+            delta = new HashMap<>(cambios);
+        }
+
+        int n = a.cantidadCuentas();
+        long[] debe = new long[n];
+        long[] haber = new long[n];
+        int[] filas = new int[n];
+        Map<String, long[]> nuevas = new HashMap<>(); // cuentas que no estaban en la foto: debe, haber, filas
+        try {
+            a.sumar(desde, hasta, debe, haber, filas);
+            for (Map.Entry<Long, Movimiento> cambio : delta.entrySet()) {
+                // se saca la fila como esta en la foto y se suma como quedo
+                int fila = a.posicion(cambio.getKey());
+                if (fila >= 0 && ArchivoInstantanea.dentro(a.fechaEn(fila), desde, hasta)) {
+                    int c = a.cuentaEn(fila);
+                    debe[c] = Math.subtractExact(debe[c], a.debeEn(fila));
+                    haber[c] = Math.subtractExact(haber[c], a.haberEn(fila));
+                    filas[c]--;
+                }
+                Movimiento m = cambio.getValue();
+                if (m.borrada() || !ArchivoInstantanea.dentro(m.fecha(), desde, hasta)) continue;
+                int c = a.indice(m.cuentaId());
+                if (c >= 0) {
+                    debe[c] = Math.addExact(debe[c], m.debe());
+                    haber[c] = Math.addExact(haber[c], m.haber());
+                    filas[c]++;
+                } else {
+                    long[] s = nuevas.computeIfAbsent(m.cuentaId(), k -> new long[3]);
+                    s[0] = Math.addExact(s[0], m.debe());
+                    s[1] = Math.addExact(s[1], m.haber());
+                    s[2]++;
+                }
+            }
+        } catch (ArithmeticException desborde) {
+            return Optional.empty(); // la BD lo suma en decimal
+        }
+
+        Map<String, TotalCuenta> totales = new TreeMap<>();
+        for (int c = 0; c < n; c++) {
+            if (filas[c] > 0) totales.put(a.cuenta(c), total(a.cuenta(c), debe[c], haber[c]));
+        }
+        nuevas.forEach((id, s) -> totales.put(id, total(id, s[0], s[1])));
+        return Optional.of(new ArrayList<>(totales.values()));
+    }
+
+    private TotalCuenta total(String cuentaId, long debe, long haber) {
+        String nombre = catalogo.buscar(cuentaId).map(CatalogoCuentas.CuentaInfo::nombre).orElse(null);
+        return new TotalCuenta(cuentaId, nombre, BigDecimal.valueOf(debe, 2), BigDecimal.valueOf(haber, 2));
+    }
+}
@@ -0,0 +1,146 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Arbol de prefijos sobre los ids de cuenta: "1101" cuelga de "11" y este de "1".
+ * Cada nodo sabe cuantas cuentas tiene debajo, asi esHoja y ancestros cuestan lo que mide el id.
+ */
+public class JerarquiaCuentas {
+
+    private static final class Nodo {
+        private final TreeMap<Character, Nodo> hijos = new TreeMap<>();
+        private String cuentaId; // null si el prefijo no es una cuenta
+        private int cuentas;     // cuentas en este subarbol, incluida la propia
+    }
+
+    private final Nodo raiz = new Nodo();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void agregar(String id) {
+        if (id == null || id.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            if (contieneSinLock(id)) return;
+            Nodo n = raiz;
+            n.cuentas++;
+            for (int i = 0; i < id.length(); i++) {
+                n = n.hijos.computeIfAbsent(id.charAt(i), c -> new Nodo());
+                n.cuentas++;
+            }
+            n.cuentaId = id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void quitar(String id) {
+        if (id == null || id.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            if (!contieneSinLock(id)) return;
+            Nodo n = raiz;
+            n.cuentas--;
+            for (int i = 0; i < id.length(); i++) {
+                Nodo hijo = n.hijos.get(id.charAt(i));
+                if (--hijo.cuentas == 0) {
+                    n.hijos.remove(id.charAt(i)); // la rama ya no tiene cuentas
+                    return;
+                }
+                n = hijo;
+            }
+            n.cuentaId = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void reemplazarTodo(Collection<String> ids) {
+        lock.writeLock().lock(); // el lock es reentrante, agregar lo vuelve a tomar
+        try {
+            raiz.hijos.clear();
+            raiz.cuentas = 0;
+            ids.forEach(this::agregar);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Una cuenta es hoja si ninguna otra cuenta empieza con su id */
+    public boolean esHoja(String id) {
+        lock.readLock().lock();
+        try {
+            Nodo n = buscar(id);
+            return n != null && n.cuentaId != null && n.cuentas == 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Cuentas que son prefijo propio del id, de la mas general a la mas cercana */
+    public List<String> ancestros(String id) {
+        List<String> out = new ArrayList<>();
+        if (id == null) return out;
+        lock.readLock().lock();
+        try {
+            Nodo n = raiz;
+            for (int i = 0; i < id.length() - 1 && n != null; i++) {
+                n = n.hijos.get(id.charAt(i));
+                if (n != null && n.cuentaId != null) out.add(n.cuentaId);
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Subcuentas directas: las cuentas mas cercanas debajo del id, saltando prefijos que no son cuenta */
+    public List<String> hijos(String id) {
+        List<String> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Nodo n = buscar(id);
+            if (n != null) n.hijos.values().forEach(h -> recolectar(h, out, true));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Todas las cuentas que empiezan con el id, incluida ella misma, ordenadas */
+    public List<String> subarbol(String id) {
+        List<String> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Nodo n = buscar(id);
+            if (n != null) recolectar(n, out, false);
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void recolectar(Nodo n, List<String> out, boolean soloPrimerNivel) {
+        if (n.cuentaId != null) {
+            out.add(n.cuentaId);
+            if (soloPrimerNivel) return;
+        }
+        for (Nodo h : n.hijos.values()) recolectar(h, out, soloPrimerNivel);
+    }
+
+    private boolean contieneSinLock(String id) {
+        Nodo n = buscar(id);
+        return n != null && n.cuentaId != null;
+    }
+
+    private Nodo buscar(String id) {
+        if (id == null) return null;
+        Nodo n = raiz;
+        for (int i = 0; i < id.length() && n != null; i++) {
+            n = n.hijos.get(id.charAt(i));
+        }
+        return n;
+    }
+}
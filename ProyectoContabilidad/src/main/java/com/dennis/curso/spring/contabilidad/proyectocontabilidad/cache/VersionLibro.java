@@ -0,0 +1,79 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.LibroCambiado;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class VersionLibro {
+    //contador que sube cada vez que cambia algo que afecta los reportes (partidas, saldos o catalogo);
+    //lo que se calcula con una version sirve mientras la version no cambie
+
+    private final AtomicLong version = new AtomicLong();
+    // el contador vuelve a 0 al reiniciar; con el arranque en la etiqueta un ETag viejo no coincide por casualidad
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+    private volatile long ultimoCambio; // epoch millis del ultimo cambio confirmado
+    private final AtomicInteger enCurso = new AtomicInteger(); // transacciones con un cambio sin terminar
+
+    public long actual() {
+        return version.get();
+    }
+
+    /** Cuando se confirmo el ultimo cambio en esta instancia; la replica sirve si ya lo tiene */
+    public long ultimoCambio() {
+        return ultimoCambio;
+    }
+
+    /**
+     * Transacciones que marcaron un cambio y todavia no terminaron. Con cero en curso y la misma version antes
+     * y despues, nada se confirmo entremedio: la version sube despues del commit y el contador baja despues.
+     */
+    public int enCurso() {
+        return enCurso.get();
+    }
+
+    /** Etiqueta para ETag: arranque-version, cambia cada vez que cambia la version */
+    public String etiqueta() {
+        return arranque + "-" + version.get();
+    }
+
+    /**
+     * Marca un cambio; dentro de una transaccion la version sube al confirmar, si hace rollback no cambia nada.
+     * Sube despues de todos los afterCommit y en el lugar LibroCambiado.VERSION entre los oyentes del commit.
+     */
+    public void cambio() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            enCurso.incrementAndGet();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return LibroCambiado.VERSION;
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) subir();
+                    enCurso.decrementAndGet(); // la version ya subio
+                }
+            });
+        } else {
+            subir();
+        }
+    }
+
+    /** Todo cambio de partidas pasa por aqui */
+    @EventListener
+    void libroCambiado(LibroCambiado cambio) {
+        cambio();
+    }
+
+    private void subir() {
+        ultimoCambio = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+}
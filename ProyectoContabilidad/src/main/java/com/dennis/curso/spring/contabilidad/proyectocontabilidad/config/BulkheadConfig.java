@@ -0,0 +1,39 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "app.bulkhead.habilitado", havingValue = "true", matchIfMissing = true)
+public class BulkheadConfig {
+    //los maximos de las tres clases juntas deberian quedar cerca del tamaño del pool de conexiones;
+    //con la mayorizacion en paralelo sus tramos (hasta app.mayorizacion.hilos conexiones) salen de los reportes
+
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilter(
+            MeterRegistry registry,
+            @Value("${app.bulkhead.reportes.maximo:3}") int reportes,
+            @Value("${app.bulkhead.reportes.espera:5s}") Duration esperaReportes,
+            @Value("${app.bulkhead.escritura.maximo:3}") int escritura,
+            @Value("${app.bulkhead.escritura.espera:2s}") Duration esperaEscritura,
+            @Value("${app.bulkhead.lectura.maximo:4}") int lectura,
+            @Value("${app.bulkhead.lectura.espera:1s}") Duration esperaLectura,
+            @Value("${app.mayorizacion.paralela:false}") boolean paralela,
+            @Value("${app.mayorizacion.hilos:2}") int hilosParalela) {
+        if (paralela) reportes = Math.max(1, reportes - Math.max(1, hilosParalela));
+        BulkheadFilter filtro = new BulkheadFilter(Map.of(
+                BulkheadFilter.Clase.REPORTES, new BulkheadFilter.Limite(reportes, esperaReportes),
+                BulkheadFilter.Clase.ESCRITURA, new BulkheadFilter.Limite(escritura, esperaEscritura),
+                BulkheadFilter.Clase.LECTURA, new BulkheadFilter.Limite(lectura, esperaLectura)), registry);
+        FilterRegistrationBean<BulkheadFilter> reg = new FilterRegistrationBean<>(filtro);
+        reg.addUrlPatterns("/api/*");
+        return reg;
+    }
+}
@@ -0,0 +1,132 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limita cuantas peticiones de cada clase usan la BD a la vez, para que los reportes pesados
+ * no se queden con todas las conexiones del pool y las lecturas y altas de asientos no esperen detras.
+ * Si no hay lugar dentro del tiempo de espera de su clase, la peticion recibe 503 con Retry-After.
+ * En respuestas asincronas (streaming) el permiso se libera cuando termina la respuesta, no al salir del filtro.
+ */
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    public enum Clase { REPORTES, ESCRITURA, LECTURA }
+
+    public record Limite(int maximo, Duration espera) {
+    }
+
+    private final Map<Clase, Semaphore> permisos = new EnumMap<>(Clase.class);
+    private final Map<Clase, Duration> esperas = new EnumMap<>(Clase.class);
+    private final Map<Clase, Counter> rechazos = new EnumMap<>(Clase.class);
+
+    public BulkheadFilter(Map<Clase, Limite> limites, MeterRegistry registry) {
+        for (Clase c : Clase.values()) {
+            Limite l = limites.get(c);
+            Semaphore s = new Semaphore(l.maximo(), true); // justo: el primero que espera es el primero que entra
+            permisos.put(c, s);
+            esperas.put(c, l.espera());
+            String tag = c.name().toLowerCase();
+            Gauge.builder("contabilidad.bulkhead.disponibles", s, Semaphore::availablePermits)
+                    .tag("clase", tag).register(registry);
+            rechazos.put(c, Counter.builder("contabilidad.bulkhead.rechazos").tag("clase", tag).register(registry));
+        }
+    }
+
+    /** Reportes y exportaciones recorren todo el libro; los trabajos en segundo plano ya tienen su propio pool */
+    static Clase clasificar(String metodo, String ruta) {
+        if (ruta.startsWith("/api/reportes/trabajos") || ruta.startsWith("/api/mayor/trabajos")
+                || ruta.startsWith("/api/trabajos")) {
+            return Clase.LECTURA;
+        }
+        if (ruta.startsWith("/api/reportes") || ruta.startsWith("/api/mayor") || ruta.startsWith("/api/exportar")) {
+            return Clase.REPORTES;
+        }
+        return "GET".equals(metodo) || "HEAD".equals(metodo) || "OPTIONS".equals(metodo) ? Clase.LECTURA : Clase.ESCRITURA;
+    }
+
+    /** Los eventos SSE quedan abiertos mucho tiempo sin usar la BD: no ocupan lugar de ninguna clase */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length()).startsWith("/api/saldos/eventos");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Clase clase = clasificar(request.getMethod(), request.getRequestURI().substring(request.getContextPath().length()));
+        Semaphore s = permisos.get(clase);
+
+        boolean adquirido;
+        try {
+            adquirido = s.tryAcquire(esperas.get(clase).toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            adquirido = false;
+        }
+        if (!adquirido) {
+            rechazos.get(clase).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("{\"error\":\"Servidor ocupado, intente de nuevo en un momento.\"}");
+            return;
+        }
+
+        AtomicBoolean liberado = new AtomicBoolean();
+        Runnable liberar = () -> {
+            if (liberado.compareAndSet(false, true)) s.release();
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Liberar(liberar)); // la respuesta sigue en otro hilo
+            } else {
+                liberar.run();
+            }
+        }
+    }
+
+    private record Liberar(Runnable accion) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            accion.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            accion.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            accion.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this); // si se reinicia el modo asincrono hay que volver a escuchar
+        }
+    }
+}
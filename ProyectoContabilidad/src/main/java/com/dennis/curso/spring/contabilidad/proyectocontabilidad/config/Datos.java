@@ -2,6 +2,9 @@ package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
 
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.CuentaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PartidaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.SaldoCuentaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -28,4 +31,15 @@ public class Datos {
 
     }
 
+    @Bean
+    CommandLineRunner inicializarSaldos(SaldoCuentaRepository saldoRepository,
+                                        PartidaRepository partidaRepository,
+                                        SaldoCuentaService saldoService) {
+        return args -> {//la primera vez que arranca con partidas y sin saldos, los calcula
+            if (saldoRepository.count() == 0 && partidaRepository.count() > 0) {
+                saldoService.reconstruir();
+            }
+        };
+    }
+
 }
@@ -0,0 +1,27 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@ConditionalOnProperty(name = "app.etag.habilitado", havingValue = "true", matchIfMissing = true)
+public class EtagConfig implements WebMvcConfigurer {
+    //solo rutas cuya respuesta depende nada mas que del libro y el catalogo (lo que cuenta VersionLibro);
+    //periodos y trabajos cambian sin mover la version
+
+    private final VersionLibro version;
+
+    public EtagConfig(VersionLibro version) {
+        this.version = version;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new EtagLibroInterceptor(version))
+                .addPathPatterns("/api/reportes/**", "/api/mayor", "/api/mayor/*", "/api/cuentas", "/api/asientos")
+                .excludePathPatterns("/api/reportes/trabajos/**");
+    }
+}
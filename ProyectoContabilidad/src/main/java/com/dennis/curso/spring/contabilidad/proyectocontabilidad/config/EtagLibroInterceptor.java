@@ -0,0 +1,34 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * ETag de los reportes y listados a partir de la version del libro. Si el cliente manda If-None-Match
+ * con la etiqueta actual se responde 304 antes de llamar al controlador, sin tocar la BD.
+ * La etiqueta se toma antes de calcular la respuesta: si el libro cambia en medio, la respuesta queda
+ * con la etiqueta vieja y el siguiente pedido la vuelve a traer, nunca al reves.
+ */
+public class EtagLibroInterceptor implements HandlerInterceptor {
+
+    private final VersionLibro version;
+
+    public EtagLibroInterceptor(VersionLibro version) {
+        this.version = version;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) return true;
+
+        // no-cache: el navegador guarda la respuesta pero pregunta siempre con If-None-Match
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        // pone el header ETag y, si coincide, el estado 304
+        return !new ServletWebRequest(request, response).checkNotModified(version.etiqueta());
+    }
+}
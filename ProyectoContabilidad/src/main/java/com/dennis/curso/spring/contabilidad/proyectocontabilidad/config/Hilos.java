@@ -0,0 +1,23 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hilos de los pools propios de la aplicacion: todos daemon, para no frenar el apagado de la JVM, y con
+ * nombre "prefijo-n" para reconocerlos en un volcado de hilos.
+ */
+public final class Hilos {
+
+    private Hilos() {
+    }
+
+    public static ThreadFactory daemon(String prefijo) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefijo + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.AsientoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PartidaRepository;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricasConfig {
+    //metricas propias: timers de los servicios (@Timed), tamaño del libro y consultas de Hibernate por peticion;
+    //las de Hikari, Hibernate y http.server.requests las registra Spring Boot. Todo sale en /actuator/prometheus
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) { // sin este aspecto @Timed no hace nada fuera de los controllers
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder tamanoLibro(PartidaRepository partidaRepo, AsientoRepository asientoRepo, VersionLibro version) {
+        TamanoLibro tamano = new TamanoLibro(partidaRepo, asientoRepo, version);
+        return registry -> {
+            Gauge.builder("contabilidad.libro.partidas", tamano, TamanoLibro::partidas)
+                    .description("Partidas en el libro")
+                    .register(registry);
+            Gauge.builder("contabilidad.libro.asientos", tamano, TamanoLibro::asientos)
+                    .description("Asientos en el libro")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<MetricasHibernateFilter> metricasHibernateFilter(EntityManagerFactory emf,
+                                                                                  MeterRegistry registry) {
+        SessionFactory sf = emf.unwrap(SessionFactory.class);
+        FilterRegistrationBean<MetricasHibernateFilter> reg =
+                new FilterRegistrationBean<>(new MetricasHibernateFilter(sf.getStatistics(), registry));
+        reg.addUrlPatterns("/api/*");
+        return reg;
+    }
+
+    /** Cuenta partidas y asientos solo cuando cambia la version del libro, no en cada scrape */
+    private static final class TamanoLibro {
+        private final PartidaRepository partidaRepo;
+        private final AsientoRepository asientoRepo;
+        private final VersionLibro version;
+        private long versionContada = -1;
+        private long partidas;
+        private long asientos;
+
+        private TamanoLibro(PartidaRepository partidaRepo, AsientoRepository asientoRepo, VersionLibro version) {
+            this.partidaRepo = partidaRepo;
+            this.asientoRepo = asientoRepo;
+            this.version = version;
+        }
+
+        private synchronized void actualizar() {
+            long v = version.actual();
+            if (v == versionContada) return;
+            partidas = partidaRepo.count();
+            asientos = asientoRepo.count();
+            versionContada = v;
+        }
+
+        private double partidas() {
+            actualizar();
+            return partidas;
+        }
+
+        private double asientos() {
+            actualizar();
+            return asientos;
+        }
+    }
+}
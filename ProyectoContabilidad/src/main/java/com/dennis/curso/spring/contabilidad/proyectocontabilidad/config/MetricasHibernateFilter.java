@@ -0,0 +1,65 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Registra cuantas entidades cargo Hibernate, cuantas sentencias preparo y cuantos aciertos tuvo
+ * la cache de segundo nivel durante cada peticion, por ruta. Las estadisticas de Hibernate son
+ * globales, asi que con peticiones en paralelo la diferencia incluye trabajo de las otras:
+ * sirve para ver tendencias por endpoint, no para contar exacto una peticion suelta.
+ * En respuestas en streaming (libro mayor) solo cuenta lo hecho antes de empezar a escribir.
+ */
+public class MetricasHibernateFilter extends OncePerRequestFilter {
+
+    private final Statistics stats;
+    private final MeterRegistry registry;
+
+    public MetricasHibernateFilter(Statistics stats, MeterRegistry registry) {
+        this.stats = stats;
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!stats.isStatisticsEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long cargas = stats.getEntityLoadCount();
+        long sentencias = stats.getPrepareStatementCount();
+        long aciertos = stats.getSecondLevelCacheHitCount();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // la ruta con variables (/api/asientos/{id}) para no crear una serie por id
+            Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = patron != null ? patron.toString() : "NO_ENCONTRADO";
+            registrar("contabilidad.peticion.entidades", "Entidades cargadas por peticion", uri, request,
+                    stats.getEntityLoadCount() - cargas);
+            registrar("contabilidad.peticion.sentencias", "Sentencias JDBC preparadas por peticion", uri, request,
+                    stats.getPrepareStatementCount() - sentencias);
+            registrar("contabilidad.peticion.cache.aciertos", "Aciertos de cache de segundo nivel por peticion", uri, request,
+                    stats.getSecondLevelCacheHitCount() - aciertos);
+        }
+    }
+
+    private void registrar(String nombre, String descripcion, String uri, HttpServletRequest request, long valor) {
+        DistributionSummary.builder(nombre)
+                .description(descripcion)
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(registry)
+                .record(Math.max(0, valor));
+    }
+}
@@ -0,0 +1,81 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el atraso de la replica con un latido: en cada revision lee de la replica el momento que la primaria
+ * escribio en latido_replica y despues escribe el actual en la primaria. Como el latido se escribe una vez por
+ * revision, una replica al dia muestra uno de hace a lo sumo una revision; lo que pase de eso es atraso.
+ * Si la replica no responde o se atrasa mas del maximo, RuteoDataSource vuelve a la primaria.
+ */
+public class MonitorReplica {
+
+    private static final Logger log = LoggerFactory.getLogger(MonitorReplica.class);
+
+    private final JdbcTemplate primaria;
+    private final JdbcTemplate replica;
+    private final RuteoDataSource ruteo;
+    private final Duration maximoAtraso;
+    private final Duration revision;
+    private ScheduledExecutorService executor;
+    private boolean usable;
+
+    public MonitorReplica(DataSource primaria, DataSource replica, RuteoDataSource ruteo,
+                          Duration maximoAtraso, Duration revision) {
+        this.primaria = new JdbcTemplate(primaria);
+        this.replica = new JdbcTemplate(replica);
+        this.ruteo = ruteo;
+        this.maximoAtraso = maximoAtraso;
+        this.revision = revision;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void iniciar() {
+        executor = Executors.newSingleThreadScheduledExecutor(Hilos.daemon("monitor-replica"));
+        executor.scheduleWithFixedDelay(this::revisar, 0, revision.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void cerrar() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    void revisar() {
+        long ahora = System.currentTimeMillis();
+        try {
+            Long momento = replica.queryForObject("SELECT momento FROM latido_replica WHERE id = 1", Long.class);
+            long visto = momento == null ? -1 : momento;
+            long atraso = Math.max(0, ahora - visto - revision.toMillis());
+            informar(atraso <= maximoAtraso.toMillis(), visto, "atraso " + atraso + " ms");
+        } catch (DataAccessException e) {
+            informar(false, -1, "sin respuesta");
+            log.debug("No se pudo leer el latido de la replica", e);
+        }
+        try {
+            primaria.update("UPDATE latido_replica SET momento = ? WHERE id = 1", ahora);
+        } catch (DataAccessException e) {
+            log.warn("No se pudo escribir el latido de la replica en la primaria", e);
+        }
+    }
+
+    private void informar(boolean alDia, long visto, String detalle) {
+        ruteo.estadoReplica(alDia, visto);
+        if (alDia != usable) {
+            usable = alDia;
+            if (alDia) log.info("Replica al dia, las lecturas vuelven a la replica");
+            else log.warn("Replica no disponible ({}), las lecturas van a la primaria", detalle);
+        }
+    }
+}
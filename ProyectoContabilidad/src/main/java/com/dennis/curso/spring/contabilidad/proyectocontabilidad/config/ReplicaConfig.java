@@ -0,0 +1,69 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "app.replica.habilitada", havingValue = "true")
+public class ReplicaConfig {
+    //con la replica habilitada el DataSource de Spring (JPA, JdbcTemplate, Flyway) es el proxy perezoso sobre
+    //el ruteo; la primaria sigue saliendo de spring.datasource.* y la replica de app.replica.*
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaria(DataSourceProperties propiedades) {
+        HikariDataSource ds = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ds.setPoolName("primaria");
+        return ds;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.replica.hikari")
+    public HikariDataSource replica(@Value("${app.replica.url}") String url,
+                                    @Value("${app.replica.username:}") String usuario,
+                                    @Value("${app.replica.password:}") String clave) {
+        HikariDataSource ds = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(usuario).password(clave).build();
+        ds.setPoolName("replica");
+        ds.setReadOnly(true);
+        return ds;
+    }
+
+    @Bean
+    public RuteoDataSource ruteoDataSource(@Qualifier("primaria") DataSource primaria,
+                                           @Qualifier("replica") DataSource replica, VersionLibro version) {
+        RuteoDataSource ruteo = new RuteoDataSource(version);
+        ruteo.setTargetDataSources(Map.of(RuteoDataSource.Destino.PRIMARIA, primaria,
+                RuteoDataSource.Destino.REPLICA, replica));
+        ruteo.setDefaultTargetDataSource(primaria);
+        return ruteo;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(RuteoDataSource ruteo) {
+        return new LazyConnectionDataSourceProxy(ruteo);
+    }
+
+    @Bean
+    public MonitorReplica monitorReplica(@Qualifier("primaria") DataSource primaria,
+                                         @Qualifier("replica") DataSource replica, RuteoDataSource ruteo,
+                                         @Value("${app.replica.maximo-atraso:PT10S}") Duration maximoAtraso,
+                                         @Value("${app.replica.revision:PT1S}") Duration revision) {
+        return new MonitorReplica(primaria, replica, ruteo, maximoAtraso, revision);
+    }
+}
@@ -0,0 +1,42 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Manda las transacciones readOnly a la replica y todo lo demas a la primaria. La replica se usa solo si
+ * MonitorReplica la vio al dia: atraso dentro del maximo y con el ultimo cambio confirmado en esta instancia
+ * ya replicado, asi un reporte pedido justo despues de un asiento no sale viejo ni queda en la cache
+ * (o con un ETag) de la version nueva. Tiene que ir detras de un LazyConnectionDataSourceProxy: la conexion
+ * se pide recien en la primera sentencia, cuando la transaccion ya marco si es readOnly.
+ */
+public class RuteoDataSource extends AbstractRoutingDataSource {
+
+    public enum Destino { PRIMARIA, REPLICA }
+
+    private final VersionLibro version;
+    private volatile boolean alDia;          // se pudo leer y el atraso esta dentro del maximo
+    private volatile long visibleHasta = -1; // latido mas nuevo que se vio en la replica (epoch millis)
+
+    public RuteoDataSource(VersionLibro version) {
+        this.version = version;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaUsable()
+                ? Destino.REPLICA
+                : Destino.PRIMARIA;
+    }
+
+    public boolean replicaUsable() {
+        return alDia && visibleHasta >= version.ultimoCambio();
+    }
+
+    /** Lo llama MonitorReplica en cada revision */
+    void estadoReplica(boolean alDia, long visibleHasta) {
+        this.visibleHasta = visibleHasta;
+        this.alDia = alDia;
+    }
+}
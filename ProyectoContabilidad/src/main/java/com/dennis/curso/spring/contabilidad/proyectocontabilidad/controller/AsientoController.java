@@ -2,34 +2,72 @@ package com.dennis.curso.spring.contabilidad.proyectocontabilidad.controller;
 
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.FiltroAsientos;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.IdempotenciaService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/asientos")
 public class AsientoController {
+    private static final int LIMITE_POR_DEFECTO = 50;
+    private static final int LIMITE_MAXIMO = 500;
+
     private final AsientoService asientoService;
+    private final IdempotenciaService idempotencia;
 
-    public AsientoController(AsientoService asientoService ) {
+    public AsientoController(AsientoService asientoService, IdempotenciaService idempotencia) {
         this.asientoService = asientoService;
+        this.idempotencia = idempotencia;
     }
 
 
+    // GET /api/asientos sin parametros devuelve la lista completa como antes;
+    // con cursor, limite o algun filtro devuelve una pagina {items, siguienteCursor}
     @GetMapping
-    public List<Asiento> all() {
-        return  asientoService.findAll();
-    }//lista todos los asientos en la lista asientos con una peticion get
+    public ResponseEntity<?> all(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String cuentaId,
+            @RequestParam(required = false) String texto,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(defaultValue = "false") boolean resumen) {
+        FiltroAsientos filtro = new FiltroAsientos(desde, hasta, cuentaId, texto);
+        if (filtro.vacio() && cursor == null && limite == null && !resumen) {
+            return ResponseEntity.ok(asientoService.findAll());
+        }//lista todos los asientos en la lista asientos con una peticion get
+
+        int tam = Math.min(limite == null ? LIMITE_POR_DEFECTO : limite, LIMITE_MAXIMO);
+        return ResponseEntity.ok(resumen
+                ? asientoService.buscarResumen(filtro, cursor, tam)
+                : asientoService.buscar(filtro, cursor, tam));
+    }
 
+    // con Idempotency-Key un reintento devuelve la respuesta del primero en vez de crear otro asiento
     @PostMapping
-    public ResponseEntity<?> crear(@Valid @RequestBody AsientoRequest req) { //crea un asiento con una peticion post
-        Asiento a = asientoService.crear(req);
-        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", a.getId()));
+    public ResponseEntity<?> crear(@Valid @RequestBody AsientoRequest req, //crea un asiento con una peticion post
+                                   @RequestHeader(value = "Idempotency-Key", required = false) String clave) {
+        return idempotencia.ejecutar("POST /api/asientos", clave, req, () -> {
+            Asiento a = asientoService.crear(req);
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", a.getId()));
+        });
+    }
+
+    // 🔹 POST /api/asientos/batch → carga masiva, responde el resultado de cada asiento
+    @PostMapping("/batch")
+    public ResponseEntity<?> crearLote(@RequestBody List<AsientoRequest> reqs,
+                                       @RequestHeader(value = "Idempotency-Key", required = false) String clave) {
+        return idempotencia.ejecutar("POST /api/asientos/batch", clave, reqs,
+                () -> ResponseEntity.ok(asientoService.crearLote(reqs)));
     }
 
     // 🔹 PUT /api/asientos/{id} → actualizar
@@ -37,7 +75,7 @@ public class AsientoController {
     public ResponseEntity<?> actualizar(@PathVariable Long id,
                                         @Valid @RequestBody AsientoRequest req) {
         Asiento a = asientoService.actualizar(id, req);
-        return ResponseEntity.ok(Map.of("id", a.getId(), "mensaje", "Asiento actualizado"));
+        return ResponseEntity.ok(Map.of("id", a.getId(), "version", a.getVersion(), "mensaje", "Asiento actualizado"));
     }
 
     // 🔹 DELETE /api/asientos/{id} → eliminar
@@ -0,0 +1,73 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.controller;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.ExportacionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/exportar")
+public class ExportacionController {
+
+    private final ExportacionService exportacionService;
+
+    public ExportacionController(ExportacionService exportacionService) {
+        this.exportacionService = exportacionService;
+    }
+
+    // libro diario completo para auditoria: ?formato=csv|ndjson&gzip=true&desde=...&hasta=...
+    @GetMapping("/diario")
+    public ResponseEntity<StreamingResponseBody> diario(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        RangoFechas rango = new RangoFechas(desde, hasta);
+        ExportacionService.Formato f = ExportacionService.Formato.de(formato);
+        return descarga("libro-diario", f, gzip, out -> exportacionService.exportarDiario(rango, f, out));
+    }
+
+    // libro mayor: un movimiento por fila con su saldo acumulado dentro de la cuenta
+    @GetMapping("/mayor")
+    public ResponseEntity<StreamingResponseBody> mayor(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        RangoFechas rango = new RangoFechas(desde, hasta);
+        ExportacionService.Formato f = ExportacionService.Formato.de(formato);
+        return descarga("libro-mayor", f, gzip, out -> exportacionService.exportarMayor(rango, f, out));
+    }
+
+    // los parametros se validan antes de empezar a escribir, asi un error todavia puede ser un 400
+    private static ResponseEntity<StreamingResponseBody> descarga(String nombre, ExportacionService.Formato formato,
+                                                                  boolean gzip, Consumer<OutputStream> exportar) {
+        String archivo = nombre + "." + formato.extension() + (gzip ? ".gz" : "");
+        StreamingResponseBody cuerpo = out -> {
+            if (!gzip) {
+                exportar.accept(out);
+                return;
+            }
+            GZIPOutputStream comprimido = new GZIPOutputStream(out, 64 * 1024);
+            exportar.accept(comprimido);
+            comprimido.finish(); // escribe el final del gzip sin cerrar la respuesta
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : formato.tipoContenido() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(archivo).build().toString())
+                .body(cuerpo);
+    }
+}
@@ -1,24 +1,61 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.controller;
 
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoTrabajo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.MovimientoCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Pagina;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.MayorService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.TrabajoService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Map;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("api/mayor")
 public class MayorController {
+    private static final int LIMITE_POR_DEFECTO = 100;
+    private static final int LIMITE_MAXIMO = 1000;
 
     private final MayorService mayorService;
+    private final TrabajoService trabajoService;
 
-    public MayorController(MayorService mayorService) {
+    public MayorController(MayorService mayorService, TrabajoService trabajoService) {
         this.mayorService = mayorService;
+        this.trabajoService = trabajoService;
     } //
 
-    @GetMapping//obtiene la mayorizacion mediante una peticion get
-    public Map<String, Object>mayor() {
-        return  mayorService.generarMayor();
+    @GetMapping//obtiene la mayorizacion mediante una peticion get, se escribe mientras se lee de la BD
+    public ResponseEntity<StreamingResponseBody> mayor(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        StreamingResponseBody cuerpo = out -> mayorService.escribirMayor(desde, hasta, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cuerpo);
+    }
+
+    @GetMapping("/{cuentaId}")//mayor de una sola cuenta por paginas {items, siguienteCursor}, con el saldo acumulado guardado
+    public Pagina<MovimientoCuenta> mayorDeCuenta(
+            @PathVariable String cuentaId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        int tam = Math.min(limite == null ? LIMITE_POR_DEFECTO : limite, LIMITE_MAXIMO);
+        return mayorService.mayorDeCuenta(cuentaId, desde, hasta, cursor, tam);
+    }
+
+    @PostMapping("/trabajos")//mayor en segundo plano, se descarga de /api/trabajos/{id}/resultado cuando termina
+    public ResponseEntity<EstadoTrabajo> enviarTrabajo(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return TrabajoController.aceptado(trabajoService.enviarMayor(new RangoFechas(desde, hasta)));
     }
 }
@@ -0,0 +1,42 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.controller;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Periodo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.PeriodoService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/periodos")
+public class PeriodoController {
+
+    private final PeriodoService periodoService;
+
+    public PeriodoController(PeriodoService periodoService) {
+        this.periodoService = periodoService;
+    }
+
+    @GetMapping //lista los periodos ordenados por fecha de inicio
+    public List<Periodo> all() {
+        return periodoService.findAll();
+    }
+
+    @PostMapping //crea un periodo abierto
+    public ResponseEntity<Periodo> crear(@Valid @RequestBody Periodo periodo) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(periodoService.crear(periodo));
+    }
+
+    // cierra el periodo y guarda los saldos de cada cuenta a su fecha fin
+    @PatchMapping("/{id}/cerrar")
+    public Periodo cerrar(@PathVariable Long id) {
+        return periodoService.cerrar(id);
+    }
+
+    @PatchMapping("/{id}/reabrir")
+    public Periodo reabrir(@PathVariable Long id) {
+        return periodoService.reabrir(id);
+    }
+}
@@ -1,10 +1,25 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.controller;
 
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.BalanceComprobacion;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.BalanceGeneral;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoResultados;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoTrabajo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Periodo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResumenReportes;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.PeriodoService;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.ReportesService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.TrabajoService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
 import java.util.Map;
 
 @RestController
@@ -12,26 +27,87 @@ import java.util.Map;
 public class ReportesController {
 
     private final ReportesService srv;
+    private final SaldoCuentaService saldoService;
+    private final PeriodoService periodoService;
+    private final TrabajoService trabajoService;
 
-    public ReportesController(ReportesService srv) {
+    public ReportesController(ReportesService srv, SaldoCuentaService saldoService, PeriodoService periodoService,
+                              TrabajoService trabajoService) {
         this.srv = srv;
+        this.saldoService = saldoService;
+        this.periodoService = periodoService;
+        this.trabajoService = trabajoService;
     }
 
     // 1.1 Balance de comprobación
     @GetMapping("/balance-comprobacion")
-    public Map<String, Object> balanceComprobacion() {
-        return srv.balanceComprobacion();
+    public BalanceComprobacion balanceComprobacion(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long periodoId) {
+        return srv.balanceComprobacion(saldos(desde, hasta, periodoId));
     }
 
     // 1.2 Estado de Resultados
     @GetMapping("/estado-resultados")
-    public Map<String, Object> estadoResultados() {
-        return srv.estadoResultados();
+    public EstadoResultados estadoResultados(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long periodoId) {
+        return srv.estadoResultados(resultados(desde, hasta, periodoId));
     }
 
     // 1.2 Balance General (transfiere utilidad)
     @GetMapping("/balance-general")
-    public Map<String, Object> balanceGeneral() {
-        return srv.balanceGeneral();
+    public BalanceGeneral balanceGeneral(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long periodoId) {
+        return srv.balanceGeneral(saldos(desde, hasta, periodoId));
+    }
+
+    // Los tres reportes en una sola llamada (para el tablero), salen de la misma mayorizacion;
+    // con periodoId el estado de resultados sale aparte, con los movimientos del periodo
+    @GetMapping("/resumen")
+    public ResumenReportes resumen(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long periodoId) {
+        return srv.resumen(saldos(desde, hasta, periodoId), resultados(desde, hasta, periodoId));
+    }
+
+    // Envia un reporte para calcularlo en segundo plano (cierres de año sobre todo el historial);
+    // el estado y el resultado se consultan en /api/trabajos/{id}
+    @PostMapping("/trabajos")
+    public ResponseEntity<EstadoTrabajo> enviarTrabajo(
+            @RequestParam(defaultValue = "resumen") String tipo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long periodoId) {
+        return TrabajoController.aceptado(trabajoService.enviarReporte(tipo,
+                saldos(desde, hasta, periodoId), resultados(desde, hasta, periodoId)));
+    }
+
+    // Recalcula la tabla de saldos desde las partidas (por si se modifico la BD a mano)
+    @PostMapping("/saldos/reconstruir")
+    public Map<String, Object> reconstruirSaldos() {
+        return Map.of("cuentas", saldoService.reconstruir());
+    }
+
+    // con desde/hasta solo cuentan los movimientos del rango; solo hasta = saldo acumulado a esa fecha.
+    // con periodoId los balances son el saldo acumulado al cierre del periodo (su utilidad es la acumulada,
+    // la que cuadra con esos saldos)...
+    private RangoFechas saldos(LocalDate desde, LocalDate hasta, Long periodoId) {
+        if (periodoId != null) return new RangoFechas(null, periodoService.findById(periodoId).getFechaFin());
+        return new RangoFechas(desde, hasta);
+    }
+
+    // ...y el estado de resultados solo los movimientos del periodo
+    private RangoFechas resultados(LocalDate desde, LocalDate hasta, Long periodoId) {
+        if (periodoId != null) {
+            Periodo p = periodoService.findById(periodoId);
+            return new RangoFechas(p.getFechaInicio(), p.getFechaFin());
+        }
+        return new RangoFechas(desde, hasta);
     }
 }
@@ -0,0 +1,27 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.controller;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.EventosSaldosService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/saldos")
+public class SaldosController {
+
+    private final EventosSaldosService eventos;
+
+    public SaldosController(EventosSaldosService eventos) {
+        this.eventos = eventos;
+    }
+
+    // eventos "version" al conectar, "saldos" por asiento confirmado y "recargar" si el cliente se atraso;
+    // con EventSource el navegador se reconecta solo y manda Last-Event-ID
+    @GetMapping(path = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter eventos(@RequestHeader(value = "Last-Event-ID", required = false) String ultimoId) {
+        return eventos.suscribir(ultimoId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.controller;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoTrabajo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.TrabajoService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/trabajos")
+public class TrabajoController {
+    //consulta de los trabajos enviados desde /api/reportes/trabajos y /api/mayor/trabajos
+
+    private final TrabajoService trabajoService;
+
+    public TrabajoController(TrabajoService trabajoService) {
+        this.trabajoService = trabajoService;
+    }
+
+    @GetMapping("/{id}") // estado y progreso, para consultar cada tantos segundos
+    public EstadoTrabajo estado(@PathVariable String id) {
+        return trabajoService.estado(id);
+    }
+
+    @GetMapping("/{id}/resultado") // 409 mientras no haya terminado
+    public ResponseEntity<StreamingResponseBody> resultado(@PathVariable String id) {
+        EstadoTrabajo e = trabajoService.estado(id);
+        if (e.estado() != EstadoTrabajo.Estado.TERMINADO) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "El trabajo " + id + " está " + e.estado() + ".");
+        }
+        StreamingResponseBody cuerpo = out -> trabajoService.escribirResultado(id, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cuerpo);
+    }
+
+    // 202 con el estado y la ruta para consultarlo; lo usan ReportesController y MayorController
+    static ResponseEntity<EstadoTrabajo> aceptado(EstadoTrabajo e) {
+        return ResponseEntity.accepted().location(URI.create("/api/trabajos/" + e.id())).body(e);
+    }
+}
@@ -0,0 +1,62 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Suma importes como centavos en un long (Math.addExact) en vez de crear un BigDecimal por cada suma.
+ * Si la suma desborda o llega un importe con mas de 2 decimales sigue en BigDecimal, sin perder nada.
+ * valor() devuelve lo mismo que encadenar BigDecimal.ZERO.add(...): mismo valor y misma escala,
+ * asi el JSON y la comparacion setScale(2, HALF_UP) del balance no cambian. No es thread-safe.
+ */
+public final class AcumuladorCentavos {
+
+    private static final long[] FACTOR = {100, 10, 1}; // por escala 0, 1 y 2
+
+    private long centavos;
+    private BigDecimal grande; // != null cuando ya no se puede seguir en centavos
+    private int escala;        // la mayor escala sumada, la que tendria BigDecimal.add
+
+    public AcumuladorCentavos sumar(BigDecimal importe) {
+        return agregar(importe, false);
+    }
+
+    public AcumuladorCentavos restar(BigDecimal importe) {
+        return agregar(importe, true);
+    }
+
+    public BigDecimal valor() {
+        if (grande != null) return grande;
+        return BigDecimal.valueOf(centavos, 2).setScale(escala); // exacto: ningun sumando tenia mas decimales
+    }
+
+    public int signo() {
+        return grande != null ? grande.signum() : Long.signum(centavos);
+    }
+
+    public void reiniciar() {
+        centavos = 0;
+        grande = null;
+        escala = 0;
+    }
+
+    private AcumuladorCentavos agregar(BigDecimal importe, boolean restar) {
+        int s = importe.scale();
+        if (grande == null) {
+            // scale <= 2 y a lo sumo 18 digitos ya en centavos: entra en un long sin multiplicar con control
+            if (s >= 0 && s <= 2 && importe.precision() + 2 - s <= 18) {
+                long c = importe.unscaledValue().longValue() * FACTOR[s];
+                try {
+                    centavos = restar ? Math.subtractExact(centavos, c) : Math.addExact(centavos, c);
+                    escala = Math.max(escala, s);
+                    return this;
+                } catch (ArithmeticException desborde) {
+                    // sigue abajo en BigDecimal
+                }
+            }
+            grande = valor();
+        }
+        grande = restar ? grande.subtract(importe) : grande.add(importe);
+        escala = Math.max(escala, s);
+        return this;
+    }
+}
@@ -3,16 +3,23 @@ package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+// el indice real lo crea db/migration/V1; aca solo sirve al ddl-auto=create del benchmark
 @Entity
-@Table(name = "asientos")
+@Table(name = "asientos", indexes = {
+        @Index(name = "ix_asientos_fecha_id", columnList = "fecha, id")
+})
 public class Asiento {
     //MODELO DE ASIENTO PARA CREAR EN LA BASE DE DATOS
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // secuencia con pool de 50 ids: permite mandar los INSERT en batch (IDENTITY no lo permite)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "asientos_seq")
+    @SequenceGenerator(name = "asientos_seq", sequenceName = "asientos_seq", allocationSize = 50)
     private Long id;
 
     private LocalDate fecha;
@@ -20,6 +27,12 @@ public class Asiento {
     @Column(length = 500)
     private String descripcion;
 
+    // bloqueo optimista: dos ediciones a la vez del mismo asiento, la segunda falla con 409
+    @Version
+    @ColumnDefault("0") // las filas que ya existen quedan en 0 al agregar la columna
+    @Column(nullable = false)
+    private Long version;
+
     @OneToMany(
             mappedBy = "asiento",
             cascade = CascadeType.ALL,
@@ -30,6 +43,7 @@ public class Asiento {
 
     public void addPartida(Partida p) {
         p.setAsiento(this);
+        p.setFecha(fecha);
         this.partidas.add(p);
     }
 
@@ -48,6 +62,7 @@ public class Asiento {
 
     public void setFecha(LocalDate fecha) {
         this.fecha = fecha;
+        partidas.forEach(p -> p.setFecha(fecha)); // las partidas guardan una copia para el mayor por cuenta
     }
 
     public String getDescripcion() {
@@ -58,6 +73,14 @@ public class Asiento {
         this.descripcion = descripcion;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public List<Partida> getPartidas() {
         return partidas;
     }
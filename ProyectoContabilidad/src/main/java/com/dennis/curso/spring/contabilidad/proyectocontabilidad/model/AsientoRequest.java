@@ -1,6 +1,7 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
 import java.math.BigDecimal;
@@ -14,9 +15,10 @@ public class AsientoRequest {
         public BigDecimal debe = BigDecimal.ZERO;
         public BigDecimal haber = BigDecimal.ZERO;
     }
-    public LocalDate fecha;
+    @NotNull public LocalDate fecha;
     @NotBlank public String descripcion;
     @Size(min = 2) public List<PartidaDTO> partidas;
+    public Long version; // opcional al actualizar: la version que leyo el cliente, si no coincide -> 409
 
 
 }
@@ -0,0 +1,11 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+//filas = cuentas hoja con saldo deudor o acreedor; subtotales = cuentas padre del catalogo
+public record BalanceComprobacion(List<Fila> filas, List<Fila> subtotales, BigDecimal totalDebe, BigDecimal totalHaber) {
+
+    public record Fila(String cuentaId, String nombre, BigDecimal debe, BigDecimal haber) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+
+//desglose por grupos y totales; capital es sin utilidad, patrimonioTotal ya la incluye
+public record BalanceGeneral(BigDecimal activoCorriente,
+                             BigDecimal activoNoCorriente,
+                             BigDecimal pasivoCorriente,
+                             BigDecimal pasivoNoCorriente,
+                             BigDecimal capitalContable,
+                             BigDecimal activos,
+                             BigDecimal pasivos,
+                             BigDecimal capital,
+                             BigDecimal utilidad,
+                             BigDecimal patrimonioTotal,
+                             BigDecimal totalPasivosMasPatrimonio,
+                             boolean equilibrioOK) {
+}
@@ -0,0 +1,12 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+//lo que se avisa por /api/saldos/eventos al confirmar un asiento: version del libro (la del ETag) y,
+//por cuenta que cambio, cuanto se movio el debe y el haber y el saldo que quedo
+public record CambioSaldos(String version, List<Delta> cuentas) {
+
+    public record Delta(String cuentaId, BigDecimal debe, BigDecimal haber, BigDecimal saldo) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+//una cuenta del libro mayor con sus totales y sus movimientos en orden de fecha
+public record CuentaMayor(String cuentaId, String nombre, BigDecimal debe, BigDecimal haber, BigDecimal saldo,
+                          List<Movimiento> movimientos) {
+
+    public record Movimiento(LocalDate fecha, String descripcion, BigDecimal debe, BigDecimal haber,
+                             BigDecimal saldoAcumulado) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+
+//ingresos del grupo 5, costos y gastos del grupo 4; utilidad = ingresos - costosGastos
+public record EstadoResultados(BigDecimal ingresos, BigDecimal costosGastos, BigDecimal utilidad) {
+}
@@ -0,0 +1,10 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.time.Instant;
+
+//lo que ve el cliente de un trabajo en segundo plano; progreso va de 0 a 1 (null si no se sabe todavia)
+public record EstadoTrabajo(String id, String tipo, RangoFechas rango, Estado estado, Double progreso,
+                            Instant creado, Instant terminado, String error, String resultado) {
+
+    public enum Estado { PENDIENTE, EN_CURSO, TERMINADO, FALLIDO }
+}
@@ -0,0 +1,11 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.time.LocalDate;
+
+//filtros opcionales para buscar asientos, null = sin filtro
+public record FiltroAsientos(LocalDate desde, LocalDate hasta, String cuentaId, String texto) {
+
+    public boolean vacio() {
+        return desde == null && hasta == null && cuentaId == null && texto == null;
+    }
+}
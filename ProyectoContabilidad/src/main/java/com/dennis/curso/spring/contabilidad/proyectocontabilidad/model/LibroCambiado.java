@@ -0,0 +1,24 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository.Posicion;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+//lo publica SaldoCuentaService.ajustar dentro de la transaccion del asiento, con los saldos ya sumados y sus filas
+//bloqueadas. anteriores y nuevas son las partidas que restaron y sumaron, reparar la primera posicion del mayor
+//que cambia en cada cuenta y deltas lo que se movio cada cuenta que cambio.
+//Al confirmar, lo que depende del libro corre en el orden de las constantes (menor primero): la foto anota el
+//delta antes de que suba la version, asi un reporte con la version nueva ya lo ve, y el aviso por SSE sale con
+//la version nueva.
+public record LibroCambiado(List<Partida> anteriores, List<Partida> nuevas,
+                            Map<String, Posicion> reparar, List<Delta> deltas) {
+
+    public static final int INSTANTANEA = 100;
+    public static final int VERSION = 200;
+    public static final int EVENTOS = 300;
+
+    public record Delta(String cuentaId, BigDecimal debe, BigDecimal haber) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+//una partida en el mayor de una cuenta, con el saldo de la cuenta despues de ella
+public record MovimientoCuenta(Long partidaId, Long asientoId, LocalDate fecha, String descripcion,
+                               BigDecimal debe, BigDecimal haber, BigDecimal saldoAcumulado) {
+}
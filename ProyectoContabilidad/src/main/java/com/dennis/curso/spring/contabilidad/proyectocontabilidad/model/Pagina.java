@@ -0,0 +1,7 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.util.List;
+
+//una pagina de resultados y el cursor para pedir la siguiente (null si no hay mas)
+public record Pagina<T>(List<T> items, String siguienteCursor) {
+}
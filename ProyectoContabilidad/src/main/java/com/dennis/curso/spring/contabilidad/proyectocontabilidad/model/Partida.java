@@ -4,13 +4,21 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.PositiveOrZero;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
+// los indices reales los crean db/migration/V1 y V4 (el de cuenta con INCLUDE); aca solo sirven al ddl-auto=create del benchmark
 @Entity
-@Table(name = "partidas")
+@Table(name = "partidas", indexes = {
+        @Index(name = "ix_partidas_asiento", columnList = "asiento_id"),
+        @Index(name = "ix_partidas_cuenta_fecha", columnList = "cuenta_id, fecha, asiento_id, id")
+})
 public class Partida {
 
     //MODELO DE PARTIDA PARA CREAR EN LA BD
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // secuencia con pool de 50 ids: permite mandar los INSERT en batch (IDENTITY no lo permite)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "partidas_seq")
+    @SequenceGenerator(name = "partidas_seq", sequenceName = "partidas_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -29,6 +37,16 @@ public class Partida {
     @Column(precision = 18, scale = 2)
     private BigDecimal haber;
 
+    // copia de la fecha del asiento (la pone Asiento): el mayor de una cuenta se lee del indice sin ir a asientos
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private LocalDate fecha;
+
+    // saldo de la cuenta despues de esta partida en orden (fecha, asiento, partida). Lo escribe solo
+    // MovimientoJdbcRepository.repararSaldos antes del commit, por eso Hibernate no lo inserta ni lo actualiza
+    @Column(name = "saldo_acumulado", precision = 18, scale = 2, insertable = false, updatable = false)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private BigDecimal saldoAcumulado;
+
     //GETTERS AND SETTERS
     public Long getId() {
         return id;
@@ -62,6 +80,18 @@ public class Partida {
         this.haber = haber;
     }
 
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(LocalDate fecha) {
+        this.fecha = fecha;
+    }
+
+    public BigDecimal getSaldoAcumulado() {
+        return saldoAcumulado;
+    }
+
     public Asiento getAsiento() {
         return asiento;
     }
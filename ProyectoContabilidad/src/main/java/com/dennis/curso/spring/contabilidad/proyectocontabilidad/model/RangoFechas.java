@@ -0,0 +1,19 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.time.LocalDate;
+
+//rango de un reporte, null en un extremo = sin limite
+public record RangoFechas(LocalDate desde, LocalDate hasta) {
+
+    public static final RangoFechas TODO = new RangoFechas(null, null);
+
+    public RangoFechas {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha desde no puede ser mayor que hasta.");
+        }
+    }
+
+    public boolean esTodo() {
+        return desde == null && hasta == null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "respuestas_idempotentes", indexes = {
+        @Index(name = "ix_respuestas_idempotentes_creada", columnList = "creada")
+})
+public class RespuestaIdempotente {
+    //respuesta de un POST con Idempotency-Key, para repetirla despues de un reinicio (app.idempotencia.persistente)
+
+    @Id
+    @Column(length = 150)
+    private String clave; // ruta + clave del cliente
+
+    @Column(name = "hash_peticion", nullable = false, length = 64)
+    private String hashPeticion; // SHA-256 del cuerpo, para rechazar la misma clave con otra peticion
+
+    @Column(nullable = false)
+    private Integer estado;
+
+    @Lob
+    @Column(nullable = false)
+    private String cuerpo;
+
+    @Column(nullable = false)
+    private Long creada; // epoch millis
+
+    protected RespuestaIdempotente() {
+    }
+
+    public RespuestaIdempotente(String clave, String hashPeticion, int estado, String cuerpo, long creada) {
+        this.clave = clave;
+        this.hashPeticion = hashPeticion;
+        this.estado = estado;
+        this.cuerpo = cuerpo;
+        this.creada = creada;
+    }
+
+    public String getClave() {
+        return clave;
+    }
+
+    public String getHashPeticion() {
+        return hashPeticion;
+    }
+
+    public Integer getEstado() {
+        return estado;
+    }
+
+    public String getCuerpo() {
+        return cuerpo;
+    }
+
+    public Long getCreada() {
+        return creada;
+    }
+}
@@ -0,0 +1,23 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.util.List;
+
+//resultado de una carga masiva: totales y el detalle de cada asiento en el orden recibido
+public record ResultadoLote(int recibidos, int creados, int fallidos, List<Item> items) {
+
+    public record Item(int indice, Long id, String error) {
+
+        public static Item creado(int indice, Long id) {
+            return new Item(indice, id, null);
+        }
+
+        public static Item fallido(int indice, String error) {
+            return new Item(indice, null, error);
+        }
+    }
+
+    public static ResultadoLote de(List<Item> items) {
+        int creados = (int) items.stream().filter(i -> i.error() == null).count();
+        return new ResultadoLote(items.size(), creados, items.size() - creados, items);
+    }
+}
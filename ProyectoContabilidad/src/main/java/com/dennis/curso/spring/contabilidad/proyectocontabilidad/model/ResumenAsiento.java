@@ -0,0 +1,14 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface ResumenAsiento {
+    //proyeccion de un asiento con sus totales, sin la lista de partidas
+    Long getId();
+    LocalDate getFecha();
+    String getDescripcion();
+    BigDecimal getTotalDebe();
+    BigDecimal getTotalHaber();
+    Long getPartidas();
+}
@@ -0,0 +1,7 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+//los tres reportes calculados sobre la misma mayorizacion
+public record ResumenReportes(BalanceComprobacion balanceComprobacion,
+                              EstadoResultados estadoResultados,
+                              BalanceGeneral balanceGeneral) {
+}
@@ -0,0 +1,59 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "saldos_cuenta")
+public class SaldoCuenta {
+    //MODELO DEL SALDO ACUMULADO POR CUENTA, SE ACTUALIZA CON CADA ASIENTO
+    @Id
+    @Column(name = "cuenta_id", length = 20)
+    private String cuentaId;
+
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @MapsId
+    @JoinColumn(name = "cuenta_id")
+    private Cuenta cuenta;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal debe = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal haber = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal saldo = BigDecimal.ZERO;
+
+    protected SaldoCuenta() {
+    }
+
+    public SaldoCuenta(Cuenta cuenta, BigDecimal debe, BigDecimal haber) {
+        this.cuenta = cuenta;
+        this.debe = debe;
+        this.haber = haber;
+        this.saldo = debe.subtract(haber);
+    }
+
+    //GETTERS AND SETTERS
+    public String getCuentaId() {
+        return cuentaId;
+    }
+
+    public Cuenta getCuenta() {
+        return cuenta;
+    }
+
+    public BigDecimal getDebe() {
+        return debe;
+    }
+
+    public BigDecimal getHaber() {
+        return haber;
+    }
+
+    public BigDecimal getSaldo() {
+        return saldo;
+    }
+}
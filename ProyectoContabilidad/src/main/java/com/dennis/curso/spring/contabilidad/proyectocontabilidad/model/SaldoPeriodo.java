@@ -0,0 +1,60 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "saldos_periodo", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_saldos_periodo_cuenta", columnNames = {"periodo_id", "cuenta_id"})
+})
+public class SaldoPeriodo {
+    //SALDO ACUMULADO DE UNA CUENTA AL CIERRE DE UN PERIODO (DESDE EL INICIO DEL LIBRO)
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "periodo_id", nullable = false)
+    private Periodo periodo;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "cuenta_id", nullable = false)
+    private Cuenta cuenta;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal debe;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal haber;
+
+    protected SaldoPeriodo() {
+    }
+
+    public SaldoPeriodo(Periodo periodo, Cuenta cuenta, BigDecimal debe, BigDecimal haber) {
+        this.periodo = periodo;
+        this.cuenta = cuenta;
+        this.debe = debe;
+        this.haber = haber;
+    }
+
+    //GETTERS
+    public Long getId() {
+        return id;
+    }
+
+    public Periodo getPeriodo() {
+        return periodo;
+    }
+
+    public Cuenta getCuenta() {
+        return cuenta;
+    }
+
+    public BigDecimal getDebe() {
+        return debe;
+    }
+
+    public BigDecimal getHaber() {
+        return haber;
+    }
+}
@@ -0,0 +1,21 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import java.math.BigDecimal;
+
+//totales de una cuenta, la BD los llena con un GROUP BY (select new ...TotalCuenta(...))
+public record TotalCuenta(String cuentaId, String nombre, BigDecimal debe, BigDecimal haber) {
+
+    public TotalCuenta {
+        debe = debe == null ? BigDecimal.ZERO : debe;
+        haber = haber == null ? BigDecimal.ZERO : haber;
+    }
+
+    public BigDecimal saldo() { //saldo = Σ(debe) - Σ(haber)
+        return debe.subtract(haber);
+    }
+
+    public TotalCuenta sumar(TotalCuenta otro) {
+        return new TotalCuenta(cuentaId, nombre != null ? nombre : otro.nombre(),
+                debe.add(otro.debe()), haber.add(otro.haber()));
+    }
+}
@@ -1,9 +1,23 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
 
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResumenAsiento;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface AsientoRepository extends JpaRepository<Asiento,Long> {
+import java.util.Collection;
+import java.util.List;
+
+public interface AsientoRepository extends JpaRepository<Asiento,Long>, AsientoRepositoryCustom {
  //repository de asientos que extendera de JpaRepository
+
+    //carga los asientos de la pagina con sus partidas y cuentas en un solo select
+    @Query("select distinct a from Asiento a left join fetch a.partidas p left join fetch p.cuenta where a.id in :ids")
+    List<Asiento> findConPartidasByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select a.id as id, a.fecha as fecha, a.descripcion as descripcion, " +
+            "coalesce(sum(p.debe), 0) as totalDebe, coalesce(sum(p.haber), 0) as totalHaber, count(p) as partidas " +
+            "from Asiento a left join a.partidas p where a.id in :ids group by a.id, a.fecha, a.descripcion")
+    List<ResumenAsiento> resumenByIdIn(@Param("ids") Collection<Long> ids);
 }
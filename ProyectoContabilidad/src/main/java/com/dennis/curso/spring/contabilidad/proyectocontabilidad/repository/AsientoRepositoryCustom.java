@@ -0,0 +1,20 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface AsientoRepositoryCustom {
+    //parte de AsientoRepository con la consulta armada segun los filtros
+
+    /** Lugar de un asiento en el listado, orden (fecha, id); tambien es el cursor de la pagina */
+    record Clave(LocalDate fecha, long id) {
+    }
+
+    /**
+     * Claves de la siguiente pagina en orden (fecha, id), empezando despues de la clave dada (null = desde
+     * el principio). Los filtros null no entran a la consulta. Usa el indice ix_asientos_fecha_id; los
+     * asientos sin fecha van primero.
+     */
+    List<Clave> buscarClavesPagina(LocalDate desde, LocalDate hasta, String cuentaId, String texto,
+                                   Clave despues, int limite);
+}
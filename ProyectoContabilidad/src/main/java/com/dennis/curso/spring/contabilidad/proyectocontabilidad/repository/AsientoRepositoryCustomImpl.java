@@ -0,0 +1,64 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class AsientoRepositoryCustomImpl implements AsientoRepositoryCustom {
+
+    private final EntityManager em;
+
+    AsientoRepositoryCustomImpl(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * Solo los filtros pedidos van al WHERE: cada combinacion es su propia consulta con su propio plan, y
+     * la condicion del cursor queda como rango sobre (fecha, id) en vez de un "? is null or ..." que no
+     * deja buscar en el indice.
+     */
+    @Override
+    public List<Clave> buscarClavesPagina(LocalDate desde, LocalDate hasta, String cuentaId, String texto,
+                                          Clave despues, int limite) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder jpql = new StringBuilder("select a.fecha, a.id from Asiento a where 1 = 1");
+        if (desde != null) {
+            jpql.append(" and a.fecha >= :desde");
+            params.put("desde", desde);
+        }
+        if (hasta != null) {
+            jpql.append(" and a.fecha <= :hasta");
+            params.put("hasta", hasta);
+        }
+        if (texto != null) {
+            jpql.append(" and lower(a.descripcion) like :texto");
+            params.put("texto", "%" + texto.toLowerCase() + "%");
+        }
+        if (cuentaId != null) {
+            jpql.append(" and exists (select 1 from Partida p where p.asiento = a and p.cuenta.id = :cuentaId)");
+            params.put("cuentaId", cuentaId);
+        }
+        if (despues != null) {
+            if (despues.fecha() == null) {
+                // los sin fecha van primero: sigue el resto de los sin fecha y despues todos los fechados
+                jpql.append(" and (a.fecha is not null or a.id > :idCursor)");
+            } else {
+                // el "fecha >= " repite lo que dice el OR pero deja buscar directo en el indice
+                jpql.append(" and a.fecha >= :fechaCursor and (a.fecha > :fechaCursor or a.id > :idCursor)");
+                params.put("fechaCursor", despues.fecha());
+            }
+            params.put("idCursor", despues.id());
+        }
+        jpql.append(" order by a.fecha, a.id");
+
+        TypedQuery<Object[]> q = em.createQuery(jpql.toString(), Object[].class);
+        params.forEach(q::setParameter);
+        return q.setMaxResults(limite).getResultList().stream()
+                .map(fila -> new Clave((LocalDate) fila[0], (Long) fila[1]))
+                .toList();
+    }
+}
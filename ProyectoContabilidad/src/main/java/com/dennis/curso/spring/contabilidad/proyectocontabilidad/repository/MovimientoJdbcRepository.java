@@ -0,0 +1,271 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+@Repository
+public class MovimientoJdbcRepository {
+    //lectura de movimientos con un cursor de solo avance, sin cargar entidades
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Cantidad de partidas, mayor id y suma de las versiones de los asientos: si no cambiaron, el libro
+     * no cambio (ver InstantaneaLibro). La version cubre las ediciones que no agregan ni borran partidas.
+     */
+    public record Huella(long partidas, long maxId, long versiones) {
+    }
+
+    /** Primer y ultimo id de partida, para partir el libro en tramos */
+    public record RangoIds(long desde, long hasta) {
+        public long tamano() {
+            return hasta - desde + 1;
+        }
+    }
+
+    /**
+     * Lugar de una partida en el mayor de su cuenta: orden (fecha, asiento, partida) como recorrerMayor,
+     * las partidas sin fecha van primero igual que en el ORDER BY de la BD.
+     */
+    public record Posicion(LocalDate fecha, long asientoId, long id) implements Comparable<Posicion> {
+        private static final Comparator<Posicion> ORDEN = Comparator
+                .comparing(Posicion::fecha, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingLong(Posicion::asientoId)
+                .thenComparingLong(Posicion::id);
+
+        @Override
+        public int compareTo(Posicion otra) {
+            return ORDEN.compare(this, otra);
+        }
+    }
+
+    // saldo_acumulado = saldo inicial + suma corrida de las partidas elegidas; solo escribe las filas que cambian
+    private static final String REPARAR =
+            "MERGE INTO partidas p USING (" +
+            "SELECT id, %s + SUM(COALESCE(debe, 0) - COALESCE(haber, 0)) " +
+            "OVER (%s ORDER BY fecha, asiento_id, id ROWS UNBOUNDED PRECEDING) AS saldo " +
+            "FROM partidas%s) s ON p.id = s.id " +
+            "WHEN MATCHED AND (p.saldo_acumulado IS NULL OR p.saldo_acumulado <> s.saldo) " +
+            "THEN UPDATE SET saldo_acumulado = s.saldo;";
+
+    public MovimientoJdbcRepository(DataSource dataSource,
+                                    @Value("${app.mayor.fetch-size:1000}") int fetchSize) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(fetchSize); // filas que trae el driver por viaje a la BD
+    }
+
+    /**
+     * Recorre las partidas unidas a su asiento y su cuenta en una sola consulta,
+     * ordenadas por cuenta, fecha, asiento y partida. Columnas: cuenta_id, nombre,
+     * asiento_id, fecha, descripcion, debe, haber.
+     */
+    public void recorrerMayor(LocalDate desde, LocalDate hasta, RowCallbackHandler handler) {
+        recorrerMayor(desde, hasta, null, null, handler);
+    }
+
+    /** Igual que recorrerMayor pero solo las cuentas con cuentaDesde <= id < cuentaHasta (null = sin limite) */
+    public void recorrerMayor(LocalDate desde, LocalDate hasta, String cuentaDesde, String cuentaHasta,
+                              RowCallbackHandler handler) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT p.cuenta_id, c.nombre, a.id AS asiento_id, a.fecha, a.descripcion, p.debe, p.haber " +
+                "FROM partidas p " +
+                "JOIN asientos a ON a.id = p.asiento_id " +
+                "JOIN cuentas c ON c.id = p.cuenta_id WHERE 1 = 1");
+        filtroFechas(sql, params, desde, hasta);
+        if (cuentaDesde != null) {
+            sql.append(" AND p.cuenta_id >= ?");
+            params.add(cuentaDesde);
+        }
+        if (cuentaHasta != null) {
+            sql.append(" AND p.cuenta_id < ?");
+            params.add(cuentaHasta);
+        }
+        sql.append(" ORDER BY p.cuenta_id, a.fecha, a.id, p.id");
+
+        jdbc.query(sql.toString(), handler, params.toArray());
+    }
+
+    /**
+     * Recorre el libro diario: cada partida con su asiento y su cuenta, en orden de fecha,
+     * asiento y partida. Columnas: asiento_id, fecha, descripcion, partida_id, cuenta_id, nombre, debe, haber.
+     */
+    public void recorrerDiario(LocalDate desde, LocalDate hasta, RowCallbackHandler handler) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT a.id AS asiento_id, a.fecha, a.descripcion, p.id AS partida_id, p.cuenta_id, c.nombre, p.debe, p.haber " +
+                "FROM partidas p " +
+                "JOIN asientos a ON a.id = p.asiento_id " +
+                "JOIN cuentas c ON c.id = p.cuenta_id WHERE 1 = 1");
+        filtroFechas(sql, params, desde, hasta);
+        sql.append(" ORDER BY a.fecha, a.id, p.id");
+
+        jdbc.query(sql.toString(), handler, params.toArray());
+    }
+
+    /** Cantidad de partidas en el rango, para calcular el avance de un recorrido largo */
+    public long contarMovimientos(LocalDate desde, LocalDate hasta) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT COUNT(*) FROM partidas p JOIN asientos a ON a.id = p.asiento_id WHERE 1 = 1");
+        filtroFechas(sql, params, desde, hasta);
+        Long n = jdbc.queryForObject(sql.toString(), Long.class, params.toArray());
+        return n == null ? 0 : n;
+    }
+
+    /** null si no hay partidas; MIN y MAX sobre la clave primaria no recorren la tabla */
+    public RangoIds rangoIds() {
+        return jdbc.query("SELECT MIN(id), MAX(id) FROM partidas", rs -> {
+            if (!rs.next()) return null;
+            long desde = rs.getLong(1);
+            return rs.wasNull() ? null : new RangoIds(desde, rs.getLong(2));
+        });
+    }
+
+    /**
+     * Totales por cuenta de las partidas con idDesde <= id <= idHasta y dentro del rango de fechas,
+     * mismas sumas que PartidaRepository.totalesPorCuentaEntre pero sobre un tramo del libro.
+     */
+    public List<TotalCuenta> totalesPorCuenta(LocalDate desde, LocalDate hasta, long idDesde, long idHasta) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT p.cuenta_id, c.nombre, SUM(p.debe) AS debe, SUM(p.haber) AS haber " +
+                "FROM partidas p JOIN cuentas c ON c.id = p.cuenta_id");
+        if (desde != null || hasta != null) sql.append(" JOIN asientos a ON a.id = p.asiento_id");
+        sql.append(" WHERE p.id BETWEEN ? AND ?");
+        params.add(idDesde);
+        params.add(idHasta);
+        filtroFechas(sql, params, desde, hasta);
+        sql.append(" GROUP BY p.cuenta_id, c.nombre");
+
+        return jdbc.query(sql.toString(), (rs, i) -> new TotalCuenta(rs.getString("cuenta_id"),
+                rs.getString("nombre"), rs.getBigDecimal("debe"), rs.getBigDecimal("haber")), params.toArray());
+    }
+
+    public Huella huella() {
+        return jdbc.queryForObject("SELECT (SELECT COUNT(*) FROM partidas), (SELECT COALESCE(MAX(id), 0) FROM partidas), " +
+                        "(SELECT COALESCE(SUM(CAST(version AS BIGINT)), 0) FROM asientos)",
+                (rs, i) -> new Huella(rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+    }
+
+    /**
+     * Recorre todas las partidas con id <= hastaId en orden de id, con la fecha de su asiento.
+     * Columnas: id, cuenta_id, fecha, debe, haber.
+     */
+    public void recorrerPartidas(long hastaId, RowCallbackHandler handler) {
+        jdbc.query("SELECT p.id, p.cuenta_id, a.fecha, p.debe, p.haber " +
+                "FROM partidas p JOIN asientos a ON a.id = p.asiento_id " +
+                "WHERE p.id <= ? ORDER BY p.id", handler, hastaId);
+    }
+
+    /**
+     * Una pagina del mayor de una cuenta: las partidas con fecha en el rango (null = sin limite) que van
+     * despues de la posicion dada (null = desde el principio), en orden. Es un rango del indice
+     * ix_partidas_cuenta_fecha. Columnas: id, asiento_id, fecha, descripcion, debe, haber, saldo_acumulado.
+     */
+    public <T> List<T> paginaMayor(String cuentaId, LocalDate desde, LocalDate hasta, Posicion despues,
+                                   int filas, RowMapper<T> mapper) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT p.id, p.asiento_id, p.fecha, a.descripcion, p.debe, p.haber, p.saldo_acumulado " +
+                "FROM partidas p JOIN asientos a ON a.id = p.asiento_id WHERE p.cuenta_id = ?");
+        params.add(cuentaId);
+        if (desde != null) {
+            sql.append(" AND p.fecha >= ?");
+            params.add(Date.valueOf(desde));
+        }
+        if (hasta != null) {
+            sql.append(" AND p.fecha <= ?");
+            params.add(Date.valueOf(hasta));
+        }
+        if (despues != null) {
+            sql.append(" AND ");
+            posterior(sql, params, "p.", despues, false);
+        }
+        sql.append(" ORDER BY p.fecha, p.asiento_id, p.id OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY");
+        params.add(filas);
+
+        return jdbc.query(sql.toString(), mapper, params.toArray());
+    }
+
+    /**
+     * Recalcula saldo_acumulado de la cuenta desde esa posicion (incluida) hasta el final, partiendo del saldo
+     * guardado en la partida anterior; asi un asiento al final de la cuenta solo toca sus propias filas.
+     * Sin posicion con fecha, o si la anterior no tiene saldo, recalcula la cuenta entera.
+     * Devuelve las filas que cambiaron.
+     */
+    public int repararSaldos(String cuentaId, Posicion desde) {
+        if (desde != null && desde.fecha() != null) {
+            BigDecimal inicial = saldoAnterior(cuentaId, desde);
+            if (inicial != null) {
+                List<Object> params = new ArrayList<>();
+                params.add(inicial);
+                params.add(cuentaId);
+                StringBuilder filtro = new StringBuilder(" WHERE cuenta_id = ? AND ");
+                posterior(filtro, params, "", desde, true);
+                return jdbc.update(REPARAR.formatted("CAST(? AS NUMERIC(18,2))", "", filtro), params.toArray());
+            }
+        }
+        return jdbc.update(REPARAR.formatted("0", "", " WHERE cuenta_id = ?"), cuentaId);
+    }
+
+    /** Recalcula saldo_acumulado de todas las cuentas, para cuando las partidas se cargaron por fuera */
+    public int repararSaldos() {
+        return jdbc.update(REPARAR.formatted("0", "PARTITION BY cuenta_id", ""));
+    }
+
+    /** Saldo de la ultima partida de la cuenta antes de la posicion: cero si no hay, null si no tiene saldo */
+    private BigDecimal saldoAnterior(String cuentaId, Posicion antes) {
+        return jdbc.query("SELECT saldo_acumulado FROM partidas WHERE cuenta_id = ? AND (fecha IS NULL OR fecha < ? " +
+                        "OR (fecha = ? AND (asiento_id < ? OR (asiento_id = ? AND id < ?)))) " +
+                        "ORDER BY fecha DESC, asiento_id DESC, id DESC OFFSET 0 ROWS FETCH NEXT 1 ROWS ONLY",
+                rs -> rs.next() ? rs.getBigDecimal(1) : BigDecimal.ZERO,
+                cuentaId, Date.valueOf(antes.fecha()), Date.valueOf(antes.fecha()),
+                antes.asientoId(), antes.asientoId(), antes.id());
+    }
+
+    /**
+     * Condicion "va despues de la posicion" (o igual, con incluida) sobre las columnas de partidas.
+     * El "fecha >= ?" de adelante repite lo que ya dice el OR pero deja buscar directo en el indice.
+     */
+    private static void posterior(StringBuilder sql, List<Object> params, String alias, Posicion pos, boolean incluida) {
+        String op = incluida ? ">=" : ">";
+        if (pos.fecha() == null) {
+            sql.append("(%1$sfecha IS NOT NULL OR %1$sasiento_id > ? OR (%1$sasiento_id = ? AND %1$sid %2$s ?))"
+                    .formatted(alias, op));
+        } else {
+            sql.append(("%1$sfecha >= ? AND (%1$sfecha > ? OR (%1$sfecha = ? AND " +
+                    "(%1$sasiento_id > ? OR (%1$sasiento_id = ? AND %1$sid %2$s ?))))").formatted(alias, op));
+            Date fecha = Date.valueOf(pos.fecha());
+            params.add(fecha);
+            params.add(fecha);
+            params.add(fecha);
+        }
+        params.add(pos.asientoId());
+        params.add(pos.asientoId());
+        params.add(pos.id());
+    }
+
+    private static void filtroFechas(StringBuilder sql, List<Object> params, LocalDate desde, LocalDate hasta) {
+        if (desde != null) {
+            sql.append(" AND a.fecha >= ?");
+            params.add(Date.valueOf(desde));
+        }
+        if (hasta != null) {
+            sql.append(" AND a.fecha <= ?");
+            params.add(Date.valueOf(hasta));
+        }
+    }
+}
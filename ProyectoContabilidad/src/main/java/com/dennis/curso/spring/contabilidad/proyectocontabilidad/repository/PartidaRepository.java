@@ -1,9 +1,29 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
 
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Partida;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
 
 public interface PartidaRepository extends CrudRepository<Partida,String> {
     //repository de Partida que extiende de crud repository
     long countByCuenta_Id(String id); //funcion abstracta para contar por id de una cuenta
+
+    //totales por cuenta calculados en la BD, una fila por cuenta con movimientos
+    @Query("select new com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta(" +
+            "c.id, c.nombre, sum(p.debe), sum(p.haber)) " +
+            "from Partida p join p.cuenta c group by c.id, c.nombre order by c.id")
+    List<TotalCuenta> totalesPorCuenta();
+
+    //igual que totalesPorCuenta pero solo con los asientos dentro del rango (null = sin limite)
+    @Query("select new com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta(" +
+            "c.id, c.nombre, sum(p.debe), sum(p.haber)) " +
+            "from Partida p join p.cuenta c join p.asiento a " +
+            "where (:desde is null or a.fecha >= :desde) and (:hasta is null or a.fecha <= :hasta) " +
+            "group by c.id, c.nombre order by c.id")
+    List<TotalCuenta> totalesPorCuentaEntre(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
 }
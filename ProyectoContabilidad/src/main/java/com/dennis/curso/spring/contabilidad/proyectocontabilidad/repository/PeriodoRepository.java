@@ -0,0 +1,50 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Periodo;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface PeriodoRepository extends JpaRepository<Periodo, Long> {
+    //repository de periodos contables
+
+    List<Periodo> findAllByOrderByFechaInicioAsc();
+
+    //ultimo periodo cerrado que termina en o antes de la fecha (checkpoint de saldos)
+    Optional<Periodo> findFirstByCerradoTrueAndFechaFinLessThanEqualOrderByFechaFinDesc(LocalDate fecha);
+
+    //ultimo periodo cerrado, todo lo anterior a su fecha fin queda congelado
+    Optional<Periodo> findFirstByCerradoTrueOrderByFechaFinDesc();
+
+    //periodos que se cruzan con el rango [inicio, fin]
+    @Query("select count(p) > 0 from Periodo p where p.fechaInicio <= :fin and p.fechaFin >= :inicio")
+    boolean existeCruce(@Param("inicio") LocalDate inicio, @Param("fin") LocalDate fin);
+
+    //el periodo cuyo cierre congela la fecha: el primero que termina en o despues de ella (contiene la fecha o es
+    //el siguiente si cae entre periodos; se cierran en orden). Lock compartido hasta el fin de la transaccion del
+    //asiento: los asientos no se frenan entre si, pero el cierre de ese periodo espera a que confirmen
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    Optional<Periodo> findFirstByFechaFinGreaterThanEqualOrderByFechaFinAsc(LocalDate fecha);
+
+    //el periodo a cerrar, bloqueado para escritura antes de sumar los saldos
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Periodo p where p.id = :id")
+    Optional<Periodo> bloquearParaCerrar(@Param("id") Long id);
+
+    //update que no cambia nada pero deja el lock exclusivo en la fila: en SQL Server PESSIMISTIC_WRITE es updlock,
+    //que convive con el lock compartido de los asientos; el exclusivo espera a que confirmen y frena a los nuevos
+    @Modifying
+    @Query("update Periodo p set p.cerrado = p.cerrado where p.id = :id")
+    int bloquearExclusivo(@Param("id") Long id);
+
+    boolean existsByCerradoFalseAndFechaFinLessThan(LocalDate fecha); //hay periodos abiertos antes de la fecha
+
+    boolean existsByCerradoTrueAndFechaInicioGreaterThan(LocalDate fecha); //hay periodos cerrados despues de la fecha
+}
@@ -0,0 +1,17 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RespuestaIdempotente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RespuestaIdempotenteRepository extends JpaRepository<RespuestaIdempotente, String> {
+
+    //borra las respuestas vencidas
+    @Transactional
+    @Modifying
+    @Query("delete from RespuestaIdempotente r where r.creada < :limite")
+    int borrarAnteriores(@Param("limite") long limite);
+}
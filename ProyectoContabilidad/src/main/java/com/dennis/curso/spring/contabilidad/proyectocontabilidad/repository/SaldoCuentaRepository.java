@@ -0,0 +1,34 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.SaldoCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SaldoCuentaRepository extends JpaRepository<SaldoCuenta, String>, SaldoCuentaRepositoryCustom {
+    //repository de los saldos por cuenta
+
+    @Query("select new com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta(" +
+            "s.cuentaId, c.nombre, s.debe, s.haber) " +
+            "from SaldoCuenta s join s.cuenta c order by s.cuentaId")
+    List<TotalCuenta> totalesPorCuenta(); //un solo select con el nombre de la cuenta
+
+    //saldos de algunas cuentas, para avisar como quedaron despues de aplicar los deltas
+    @Query("select new com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta(" +
+            "s.cuentaId, c.nombre, s.debe, s.haber) " +
+            "from SaldoCuenta s join s.cuenta c where s.cuentaId in :ids")
+    List<TotalCuenta> totalesDe(@Param("ids") Collection<String> ids);
+
+    //recalcula todos los saldos a partir de las partidas
+    @Modifying
+    @Query(value = "INSERT INTO saldos_cuenta (cuenta_id, debe, haber, saldo) " +
+            "SELECT p.cuenta_id, SUM(COALESCE(p.debe, 0)), SUM(COALESCE(p.haber, 0)), " +
+            "SUM(COALESCE(p.debe, 0)) - SUM(COALESCE(p.haber, 0)) " +
+            "FROM partidas p GROUP BY p.cuenta_id", nativeQuery = true)
+    int insertarDesdePartidas();
+}
@@ -0,0 +1,13 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import java.math.BigDecimal;
+
+public interface SaldoCuentaRepositoryCustom {
+    //parte de SaldoCuentaRepository que va por JDBC
+
+    /**
+     * Suma el delta a la fila de saldo de la cuenta y la crea si es su primer movimiento. Al volver la fila
+     * queda bloqueada hasta el fin de la transaccion, tambien con delta cero.
+     */
+    void sumarDelta(String cuentaId, BigDecimal debe, BigDecimal haber);
+}
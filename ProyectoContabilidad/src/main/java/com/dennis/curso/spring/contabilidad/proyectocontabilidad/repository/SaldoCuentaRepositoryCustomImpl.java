@@ -0,0 +1,37 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+class SaldoCuentaRepositoryCustomImpl implements SaldoCuentaRepositoryCustom {
+
+    private static final String SUMAR =
+            "UPDATE saldos_cuenta SET debe = debe + ?, haber = haber + ?, saldo = saldo + ? WHERE cuenta_id = ?";
+    private static final String CREAR =
+            "INSERT INTO saldos_cuenta (cuenta_id, debe, haber, saldo) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+
+    SaldoCuentaRepositoryCustomImpl(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * UPDATE y si no habia fila INSERT. Si otra transaccion crea la misma fila a la vez, el INSERT espera a
+     * que confirme, falla por clave duplicada y el UPDATE de nuevo la encuentra y la bloquea. Va por JDBC y
+     * no por JPA: el error de clave duplicada no deja la transaccion marcada para rollback.
+     */
+    @Override
+    public void sumarDelta(String cuentaId, BigDecimal debe, BigDecimal haber) {
+        BigDecimal saldo = debe.subtract(haber);
+        if (jdbc.update(SUMAR, debe, haber, saldo, cuentaId) > 0) return;
+        try {
+            jdbc.update(CREAR, cuentaId, debe, haber, saldo);
+        } catch (DuplicateKeyException e) {
+            jdbc.update(SUMAR, debe, haber, saldo, cuentaId);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.SaldoPeriodo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface SaldoPeriodoRepository extends JpaRepository<SaldoPeriodo, Long> {
+    //repository de los saldos guardados al cerrar cada periodo
+
+    @Query("select new com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta(" +
+            "c.id, c.nombre, s.debe, s.haber) " +
+            "from SaldoPeriodo s join s.cuenta c where s.periodo.id = :periodoId order by c.id")
+    List<TotalCuenta> totalesDelPeriodo(@Param("periodoId") Long periodoId);
+
+    @Modifying
+    @Query("delete from SaldoPeriodo s where s.periodo.id = :periodoId")
+    int borrarDelPeriodo(@Param("periodoId") Long periodoId);
+}
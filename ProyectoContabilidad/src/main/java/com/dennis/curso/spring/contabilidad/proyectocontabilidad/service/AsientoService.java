@@ -3,12 +3,19 @@ package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.FiltroAsientos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Pagina;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResultadoLote;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResumenAsiento;
 
 import java.util.List;
 
 public interface AsientoService {
     Asiento crear(AsientoRequest req); //metodo abstracto para crear
+    ResultadoLote crearLote(List<AsientoRequest> reqs); //carga masiva, devuelve el resultado de cada asiento
     List<Asiento> findAll();
+    Pagina<Asiento> buscar(FiltroAsientos filtro, String cursor, int limite); //pagina por (fecha, id) con sus partidas
+    Pagina<ResumenAsiento> buscarResumen(FiltroAsientos filtro, String cursor, int limite); //pagina solo con totales
 
     Asiento actualizar(Long id, AsientoRequest req);
     void eliminar(Long id);
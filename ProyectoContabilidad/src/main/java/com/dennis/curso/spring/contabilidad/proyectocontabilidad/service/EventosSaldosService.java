@@ -0,0 +1,10 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.CambioSaldos;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface EventosSaldosService {
+    SseEmitter suscribir(String ultimoId); //ultimoId = Last-Event-ID de una reconexion, o null
+    boolean hayOyentes(); //sin clientes conectados no hace falta armar los avisos
+    void publicar(CambioSaldos cambio); //no bloquea, se llama despues del commit
+}
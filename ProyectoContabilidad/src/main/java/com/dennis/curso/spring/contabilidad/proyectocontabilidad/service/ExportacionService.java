@@ -0,0 +1,39 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+
+import java.io.OutputStream;
+
+public interface ExportacionService {
+
+    enum Formato {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String tipoContenido;
+        private final String extension;
+
+        Formato(String tipoContenido, String extension) {
+            this.tipoContenido = tipoContenido;
+            this.extension = extension;
+        }
+
+        public String tipoContenido() {
+            return tipoContenido;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Formato de(String valor) {
+            for (Formato f : values()) {
+                if (f.name().equalsIgnoreCase(valor)) return f;
+            }
+            throw new IllegalArgumentException("Formato no soportado: " + valor + " (use csv o ndjson)");
+        }
+    }
+
+    void exportarDiario(RangoFechas rango, Formato formato, OutputStream out); //una fila por partida, en orden de fecha
+    void exportarMayor(RangoFechas rango, Formato formato, OutputStream out); //una fila por movimiento con saldo acumulado
+}
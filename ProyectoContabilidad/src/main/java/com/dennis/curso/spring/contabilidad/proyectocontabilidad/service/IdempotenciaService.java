@@ -0,0 +1,11 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+public interface IdempotenciaService {
+    //ejecuta la accion una sola vez por ruta + Idempotency-Key; las repeticiones reciben la misma respuesta.
+    //sin clave (null) solo ejecuta la accion
+    ResponseEntity<?> ejecutar(String ruta, String clave, Object peticion, Supplier<ResponseEntity<?>> accion);
+}
@@ -1,8 +1,19 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
 
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.CuentaMayor;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.MovimientoCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Pagina;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
 import java.util.Map;
+import java.util.function.LongConsumer;
 
 public interface MayorService {
 
-    Map<String, Object> generarMayor(); //Metodo abstracto para generar la mayorizacion
+    Map<String, CuentaMayor> generarMayor(LocalDate desde, LocalDate hasta); //Metodo abstracto para generar la mayorizacion
+    void recorrerMayor(LocalDate desde, LocalDate hasta, MayorVisitor visitor); //recorre el mayor sin guardarlo en memoria
+    void escribirMayor(LocalDate desde, LocalDate hasta, OutputStream out); //escribe el mayor en JSON a medida que se lee
+    void escribirMayor(LocalDate desde, LocalDate hasta, OutputStream out, LongConsumer avance); //igual, avisando los movimientos escritos
+    Pagina<MovimientoCuenta> mayorDeCuenta(String cuentaId, LocalDate desde, LocalDate hasta, String cursor, int limite); //mayor de una cuenta por paginas
 }
@@ -0,0 +1,11 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface MayorVisitor {
+    //recibe el libro mayor cuenta por cuenta mientras se lee de la BD
+    void inicioCuenta(String cuentaId, String nombre);
+    void movimiento(LocalDate fecha, String descripcion, BigDecimal debe, BigDecimal haber, BigDecimal saldoAcumulado);
+    void finCuenta(String cuentaId, BigDecimal debe, BigDecimal haber, BigDecimal saldo);
+}
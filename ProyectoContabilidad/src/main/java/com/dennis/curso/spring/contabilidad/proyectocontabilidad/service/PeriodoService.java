@@ -0,0 +1,15 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Periodo;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface PeriodoService {
+    List<Periodo> findAll(); //metodo abstracto para listar los periodos
+    Periodo findById(Long id);
+    Periodo crear(Periodo p); //metodo abstracto para crear un periodo abierto
+    Periodo cerrar(Long id); //cierra el periodo y guarda el saldo de cada cuenta
+    Periodo reabrir(Long id); //reabre el ultimo periodo cerrado y borra sus saldos
+    void validarFechaAbierta(LocalDate fecha); //falla si la fecha cae en un periodo cerrado
+}
@@ -1,9 +1,17 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
 
-import java.util.Map;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.BalanceComprobacion;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.BalanceGeneral;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoResultados;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResumenReportes;
 
 public interface ReportesService {
-    Map<String, Object> balanceComprobacion();
-    Map<String, Object> estadoResultados();
-    Map<String, Object> balanceGeneral();
+    BalanceComprobacion balanceComprobacion(RangoFechas rango);
+    EstadoResultados estadoResultados(RangoFechas rango);
+    BalanceGeneral balanceGeneral(RangoFechas rango);
+    // los tres reportes anteriores calculados con una sola mayorizacion
+    ResumenReportes resumen(RangoFechas rango);
+    // igual, pero el estado de resultados con otro rango (el de un periodo, con los balances acumulados a su cierre)
+    ResumenReportes resumen(RangoFechas saldos, RangoFechas resultados);
 }
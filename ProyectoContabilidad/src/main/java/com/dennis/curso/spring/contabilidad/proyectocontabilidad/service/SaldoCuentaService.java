@@ -0,0 +1,14 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Partida;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SaldoCuentaService {
+    List<TotalCuenta> totales(RangoFechas rango); //metodo abstracto para obtener debe/haber por cuenta en un rango
+    void ajustar(Collection<Partida> anteriores, Collection<Partida> nuevas); //resta las anteriores y suma las nuevas
+    int reconstruir(); //metodo abstracto para recalcular todos los saldos desde las partidas
+}
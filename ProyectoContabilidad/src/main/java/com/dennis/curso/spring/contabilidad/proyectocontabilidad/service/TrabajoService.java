@@ -0,0 +1,15 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoTrabajo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+
+import java.io.OutputStream;
+
+public interface TrabajoService {
+    // tipos: balance-comprobacion, estado-resultados, balance-general, resumen
+    // los balances usan saldos y el estado de resultados resultados (distintos cuando se pide un periodo)
+    EstadoTrabajo enviarReporte(String tipo, RangoFechas saldos, RangoFechas resultados);
+    EstadoTrabajo enviarMayor(RangoFechas rango); //el resultado queda en un archivo temporal
+    EstadoTrabajo estado(String id);
+    void escribirResultado(String id, OutputStream out); //JSON del resultado, solo si el trabajo termino
+}
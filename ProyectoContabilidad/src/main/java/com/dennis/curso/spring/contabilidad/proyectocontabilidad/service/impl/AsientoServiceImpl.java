@@ -1,59 +1,217 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
 
 import ch.qos.logback.core.util.StringUtil;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.FiltroAsientos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Pagina;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Partida;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResultadoLote;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResumenAsiento;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.AsientoRepository;
-import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.CuentaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.AsientoRepositoryCustom.Clave;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.CuentaService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.PeriodoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 @Service
+@Timed("contabilidad.asientos") // un timer por metodo, etiquetado con class y method
 public class AsientoServiceImpl  implements AsientoService {
     private final AsientoRepository asientoRepo;
-    private final CuentaRepository cuentaRepo;
-
-    public AsientoServiceImpl(AsientoRepository asientoRepo, CuentaRepository cuentaRepo) {
+    private final CatalogoCuentas catalogo;
+    private final SaldoCuentaService saldoService;
+    private final PeriodoService periodoService;
+    private final EntityManager em;
+    private final Validator validator;
+    private final TransactionTemplate tx;
+    private final int tamanoBloque;
+    private final int maximoLote;
+    private final DistributionSummary partidasPorAsiento;
+
+    public AsientoServiceImpl(AsientoRepository asientoRepo, CatalogoCuentas catalogo,
+                              SaldoCuentaService saldoService, PeriodoService periodoService,
+                              EntityManager em, Validator validator, PlatformTransactionManager txManager,
+                              MeterRegistry registry,
+                              @Value("${app.asientos.lote.tamano-bloque:500}") int tamanoBloque,
+                              @Value("${app.asientos.lote.maximo:20000}") int maximoLote) {
         this.asientoRepo = asientoRepo;
-        this.cuentaRepo = cuentaRepo;
+        this.catalogo = catalogo;
+        this.saldoService = saldoService;
+        this.periodoService = periodoService;
+        this.em = em;
+        this.validator = validator;
+        this.tx = new TransactionTemplate(txManager);
+        this.tamanoBloque = tamanoBloque;
+        this.maximoLote = maximoLote;
+        this.partidasPorAsiento = DistributionSummary.builder("contabilidad.asiento.partidas")
+                .description("Partidas por asiento guardado")
+                .baseUnit("partidas")
+                .publishPercentileHistogram()
+                .register(registry);
     }
 
     @Override
     @Transactional
     public Asiento crear(AsientoRequest req) { //implementacion para crear un asiento
-        if (req.partidas == null || req.partidas.size() < 2) {
-            throw new IllegalArgumentException("El asiento debe tener al menos dos partidas.");
-        }
+        List<Partida> partidas = construirPartidas(req);
+        periodoService.validarFechaAbierta(req.fecha);
 
         Asiento a = new Asiento();
         a.setFecha(req.fecha);
         a.setDescripcion(req.descripcion);
+        partidas.forEach(a::addPartida);
 
-        BigDecimal totalDebe = BigDecimal.ZERO;
-        BigDecimal totalHaber = BigDecimal.ZERO;
+        Asiento guardado = asientoRepo.save(a);
+        saldoService.ajustar(List.of(), guardado.getPartidas()); // suma el asiento a los saldos
+        partidasPorAsiento.record(partidas.size());
+        return guardado;
+    }
+
+    /**
+     * Guarda el lote por bloques, cada bloque en su propia transaccion. Un asiento invalido se
+     * reporta y no detiene el lote. Con ids de secuencia Hibernate manda los INSERT en batch JDBC
+     * al hacer flush, y los saldos se actualizan una sola vez por cuenta en cada bloque.
+     */
+    @Override
+    public ResultadoLote crearLote(List<AsientoRequest> reqs) {
+        if (reqs == null || reqs.isEmpty()) {
+            throw new IllegalArgumentException("El lote no tiene asientos.");
+        }
+        if (reqs.size() > maximoLote) {
+            throw new IllegalArgumentException("El lote supera el máximo de " + maximoLote + " asientos.");
+        }
+
+        List<ResultadoLote.Item> items = new ArrayList<>(reqs.size());
+        for (int inicio = 0; inicio < reqs.size(); inicio += tamanoBloque) {
+            items.addAll(guardarBloque(reqs, inicio, Math.min(inicio + tamanoBloque, reqs.size())));
+        }
+        return ResultadoLote.de(items);
+    }
+
+    private List<ResultadoLote.Item> guardarBloque(List<AsientoRequest> reqs, int inicio, int fin) {
+        try {
+            return tx.execute(status -> {
+                Set<LocalDate> abiertas = new HashSet<>(); // una consulta y un lock por fecha distinta del bloque
+                List<ResultadoLote.Item> items = new ArrayList<>(fin - inicio);
+                List<Partida> partidas = new ArrayList<>();
+
+                for (int i = inicio; i < fin; i++) {
+                    AsientoRequest req = reqs.get(i);
+                    try {
+                        validarCampos(req);
+                        List<Partida> lineas = construirPartidas(req);
+                        if (!abiertas.contains(req.fecha)) {
+                            periodoService.validarFechaAbierta(req.fecha);
+                            abiertas.add(req.fecha);
+                        }
+                        Asiento a = new Asiento();
+                        a.setFecha(req.fecha);
+                        a.setDescripcion(req.descripcion);
+                        lineas.forEach(a::addPartida);
+
+                        asientoRepo.save(a); // el id sale del pool de la secuencia, el INSERT espera al flush
+                        partidas.addAll(a.getPartidas());
+                        partidasPorAsiento.record(lineas.size());
+                        items.add(ResultadoLote.Item.creado(i, a.getId()));
+                    } catch (IllegalArgumentException e) {
+                        items.add(ResultadoLote.Item.fallido(i, e.getMessage()));
+                    }
+                }
+
+                saldoService.ajustar(List.of(), partidas);
+                em.flush();
+                em.clear(); // libera las entidades del bloque
+                return items;
+            });
+        } catch (RuntimeException e) {
+            // si falla la BD se revierte todo el bloque
+            List<ResultadoLote.Item> items = new ArrayList<>(fin - inicio);
+            for (int i = inicio; i < fin; i++) {
+                items.add(ResultadoLote.Item.fallido(i, "No se guardó el bloque " + inicio + "-" + (fin - 1) + ": " + e.getMessage()));
+            }
+            return items;
+        }
+    }
+
+    /** Las mismas validaciones que @Valid hace en POST /api/asientos */
+    private void validarCampos(AsientoRequest req) {
+        if (req == null) {
+            throw new IllegalArgumentException("Asiento vacío.");
+        }
+        Set<ConstraintViolation<AsientoRequest>> errores = validator.validate(req);
+        if (!errores.isEmpty()) {
+            throw new IllegalArgumentException(errores.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    /** Valida las partidas del request (cuentas, debe/haber y balance) y las devuelve sin asiento */
+    private List<Partida> construirPartidas(AsientoRequest req) {
+        if (req.partidas == null || req.partidas.size() < 2) {
+            throw new IllegalArgumentException("El asiento debe tener al menos dos partidas.");
+        }
 
+        // primero se normalizan los ids para resolver todas las cuentas de una vez
+        List<String> ids = new ArrayList<>(req.partidas.size());
         for (AsientoRequest.PartidaDTO dto : req.partidas) {
             if (dto.cuentaId == null || dto.cuentaId.isBlank()) {
                 throw new IllegalArgumentException("Falta cuentaId en una partida.");
             }
-
-            Long cuentaPk;
             try {
-                cuentaPk = Long.valueOf(dto.cuentaId.trim()); // si tu PK es UUID cámbialo
+                ids.add(String.valueOf(Long.valueOf(dto.cuentaId.trim()))); // si tu PK es UUID cámbialo
             } catch (NumberFormatException nfe) {
                 throw new IllegalArgumentException("cuentaId inválido: " + dto.cuentaId);
             }
+        }
+        Map<String, CatalogoCuentas.CuentaInfo> cuentas = catalogo.resolver(ids);
 
-            Cuenta cuenta = cuentaRepo.findById(String.valueOf(cuentaPk))
-                    .orElseThrow(() -> new IllegalArgumentException("Cuenta no encontrada: " + dto.cuentaId));
+        List<Partida> partidas = new ArrayList<>(req.partidas.size());
+        BigDecimal totalDebe = BigDecimal.ZERO;
+        BigDecimal totalHaber = BigDecimal.ZERO;
+
+        for (int i = 0; i < req.partidas.size(); i++) {
+            AsientoRequest.PartidaDTO dto = req.partidas.get(i);
+
+            // OJO: Cuenta.id es String, así que se sigue buscando como String
+            CatalogoCuentas.CuentaInfo cuenta = cuentas.get(ids.get(i));
+            if (cuenta == null) {
+                throw new IllegalArgumentException("Cuenta no encontrada: " + dto.cuentaId);
+            }
+            if (!cuenta.activo()) {
+                throw new IllegalArgumentException("La cuenta " + cuenta.id() + " está inactiva.");
+            }
 
             BigDecimal debe  = dto.debe  == null ? BigDecimal.ZERO : dto.debe;
             BigDecimal haber = dto.haber == null ? BigDecimal.ZERO : dto.haber;
@@ -65,11 +223,10 @@ public class AsientoServiceImpl  implements AsientoService {
             }
 
             Partida p = new Partida();
-            p.setCuenta(cuenta);
+            p.setCuenta(em.getReference(Cuenta.class, cuenta.id())); // referencia sin select
             p.setDebe(debe);
             p.setHaber(haber);
-
-            a.addPartida(p);
+            partidas.add(p);
 
             totalDebe  = totalDebe.add(debe);
             totalHaber = totalHaber.add(haber);
@@ -78,8 +235,7 @@ public class AsientoServiceImpl  implements AsientoService {
         if (totalDebe.compareTo(totalHaber) != 0) {
             throw new IllegalArgumentException("El asiento no está balanceado (Debe ≠ Haber).");
         }
-
-        return asientoRepo.save(a);
+        return partidas;
     }
 
     @Override
@@ -87,67 +243,178 @@ public class AsientoServiceImpl  implements AsientoService {
         return asientoRepo.findAll();
     } //implementacion para listar todos los asientos
 
+    /**
+     * Un asiento borrado entre la consulta de claves y la carga no esta en la segunda: se saltea. El cursor
+     * sale de la ultima clave de la pagina, asi la siguiente sigue en el mismo lugar aunque ese asiento falte.
+     */
     @Override
-    @Transactional
-    public Asiento actualizar(Long id, AsientoRequest req) {
-        if (req.partidas == null || req.partidas.size() < 2) {
-            throw new IllegalArgumentException("El asiento debe tener al menos dos partidas.");
-        }
+    @Transactional(readOnly = true)
+    public Pagina<Asiento> buscar(FiltroAsientos filtro, String cursor, int limite) {
+        List<Clave> claves = buscarClaves(filtro, cursor, limite);
+        boolean hayMas = claves.size() > limite;
+        if (hayMas) claves = claves.subList(0, limite);
+        List<Long> ids = claves.stream().map(Clave::id).toList();
 
-        Asiento a = asientoRepo.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Asiento no encontrado: " + id));
+        Map<Long, Asiento> porId = asientoRepo.findConPartidasByIdIn(ids).stream()
+                .collect(Collectors.toMap(Asiento::getId, Function.identity()));
+        List<Asiento> items = ids.stream().map(porId::get).filter(Objects::nonNull).toList(); // respeta el orden de la pagina
 
-        a.setFecha(req.fecha);
-        a.setDescripcion(req.descripcion);
+        return new Pagina<>(items, hayMas ? cursorDe(claves.get(claves.size() - 1)) : null);
+    }
 
-        // Limpiar partidas anteriores (por orphanRemoval se borran en BD)
-        a.getPartidas().clear();
+    @Override
+    @Transactional(readOnly = true)
+    public Pagina<ResumenAsiento> buscarResumen(FiltroAsientos filtro, String cursor, int limite) {
+        List<Clave> claves = buscarClaves(filtro, cursor, limite);
+        boolean hayMas = claves.size() > limite;
+        if (hayMas) claves = claves.subList(0, limite);
+        List<Long> ids = claves.stream().map(Clave::id).toList();
 
-        BigDecimal totalDebe = BigDecimal.ZERO;
-        BigDecimal totalHaber = BigDecimal.ZERO;
+        Map<Long, ResumenAsiento> porId = asientoRepo.resumenByIdIn(ids).stream()
+                .collect(Collectors.toMap(ResumenAsiento::getId, Function.identity()));
+        List<ResumenAsiento> items = ids.stream().map(porId::get).filter(Objects::nonNull).toList();
 
-        for (AsientoRequest.PartidaDTO dto : req.partidas) {
-            if (dto.cuentaId == null || dto.cuentaId.isBlank()) {
-                throw new IllegalArgumentException("Falta cuentaId en una partida.");
-            }
+        return new Pagina<>(items, hayMas ? cursorDe(claves.get(claves.size() - 1)) : null);
+    }
 
-            Long cuentaPk;
+    /** Pide una clave de mas para saber si existe otra pagina sin hacer un count */
+    private List<Clave> buscarClaves(FiltroAsientos filtro, String cursor, int limite) {
+        if (limite < 1) {
+            throw new IllegalArgumentException("El limite debe ser mayor que cero.");
+        }
+        Clave despues = null;
+        if (cursor != null && !cursor.isBlank()) {
+            // formato: "<fecha>_<id>", la fecha va vacia si el asiento no tiene fecha
+            int sep = cursor.lastIndexOf('_');
             try {
-                // tus IDs de cuenta son String, pero numéricos, así que reutilizamos
-                cuentaPk = Long.valueOf(dto.cuentaId.trim());
-            } catch (NumberFormatException nfe) {
-                throw new IllegalArgumentException("cuentaId inválido: " + dto.cuentaId);
+                if (sep < 0) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+                LocalDate fecha = sep > 0 ? LocalDate.parse(cursor.substring(0, sep)) : null;
+                despues = new Clave(fecha, Long.parseLong(cursor.substring(sep + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
             }
+        }
+        String texto = StringUtils.hasText(filtro.texto()) ? filtro.texto().trim() : null;
+        String cuentaId = StringUtils.hasText(filtro.cuentaId()) ? filtro.cuentaId().trim() : null;
 
-            // OJO: Cuenta.id es String, así que se sigue buscando como String
-            Cuenta cuenta = cuentaRepo.findById(String.valueOf(cuentaPk))
-                    .orElseThrow(() -> new IllegalArgumentException("Cuenta no encontrada: " + dto.cuentaId));
+        return asientoRepo.buscarClavesPagina(filtro.desde(), filtro.hasta(), cuentaId, texto, despues, limite + 1);
+    }
 
-            BigDecimal debe  = dto.debe  == null ? BigDecimal.ZERO : dto.debe;
-            BigDecimal haber = dto.haber == null ? BigDecimal.ZERO : dto.haber;
+    private static String cursorDe(Clave clave) {
+        return (clave.fecha() == null ? "" : clave.fecha().toString()) + "_" + clave.id();
+    }
 
-            boolean dPos = debe.compareTo(BigDecimal.ZERO) > 0;
-            boolean hPos = haber.compareTo(BigDecimal.ZERO) > 0;
-            if ((dPos && hPos) || (!dPos && !hPos)) {
-                throw new IllegalArgumentException("Cada partida debe tener valor solo en Debe o solo en Haber (> 0).");
+    /**
+     * Aplica solo las diferencias con lo guardado: las partidas iguales no se tocan, las que cambiaron
+     * se actualizan y el resto se inserta o se borra. La version del asiento sube siempre, aunque solo
+     * cambien partidas (OPTIMISTIC_FORCE_INCREMENT), asi dos ediciones a la vez no se pisan.
+     */
+    @Override
+    @Transactional
+    public Asiento actualizar(Long id, AsientoRequest req) {
+        List<Partida> pedidas = construirPartidas(req);
+
+        Asiento a = asientoRepo.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Asiento no encontrado: " + id));
+        if (req.version != null && !req.version.equals(a.getVersion())) {
+            // el cliente edito una version vieja, se corta antes de escribir nada
+            throw new OptimisticLockingFailureException("Asiento " + id + " en version " + a.getVersion()
+                    + ", se esperaba " + req.version);
+        }
+        periodoService.validarFechaAbierta(a.getFecha()); // no se puede sacar de un periodo cerrado
+        periodoService.validarFechaAbierta(req.fecha);    // ni meter en uno
+
+        // copia de las partidas como estaban, para revertir su efecto en los saldos
+        List<Partida> anteriores = a.getPartidas().stream().map(AsientoServiceImpl::copia).toList();
+
+        if (Objects.equals(a.getFecha(), req.fecha) && Objects.equals(a.getDescripcion(), req.descripcion)) {
+            em.lock(a, LockModeType.OPTIMISTIC_FORCE_INCREMENT); // la cabecera no cambia: Hibernate no subiria la version
+        } else {
+            a.setFecha(req.fecha);
+            a.setDescripcion(req.descripcion);
+        }
+        aplicarDiferencias(a, pedidas);
+
+        saldoService.ajustar(anteriores, a.getPartidas()); // solo aplica la diferencia por cuenta
+        return a;
+    }
+
+    /**
+     * Deja en el asiento las partidas pedidas con el minimo de escrituras: primero se apartan las iguales
+     * (cuenta, debe y haber), luego las que quedan se emparejan por cuenta y despues en orden para hacer UPDATE;
+     * las pedidas sin pareja se insertan y las guardadas sin pareja se borran (orphanRemoval).
+     */
+    private void aplicarDiferencias(Asiento a, List<Partida> pedidas) {
+        List<Partida> sobrantes = new ArrayList<>(a.getPartidas());
+        List<Partida> faltantes = new ArrayList<>();
+        for (Partida p : pedidas) {
+            if (!sobrantes.removeIf(new PrimeraIgual(p, true))) faltantes.add(p);
+        }
+
+        List<Partida> sinPareja = new ArrayList<>();
+        for (Partida p : faltantes) {
+            Partida misma = sobrantes.stream().filter(new PrimeraIgual(p, false)).findFirst().orElse(null);
+            if (misma == null) {
+                sinPareja.add(p);
+                continue;
             }
+            sobrantes.remove(misma);
+            copiarImportes(p, misma); // UPDATE de debe/haber por dirty checking
+        }
 
-            Partida p = new Partida();
-            p.setCuenta(cuenta);
-            p.setDebe(debe);
-            p.setHaber(haber);
+        int pares = Math.min(sobrantes.size(), sinPareja.size());
+        for (int i = 0; i < pares; i++) {
+            Partida destino = sobrantes.get(i);
+            destino.setCuenta(sinPareja.get(i).getCuenta());
+            copiarImportes(sinPareja.get(i), destino);
+        }
+        for (Partida nueva : sinPareja.subList(pares, sinPareja.size())) {
+            a.addPartida(nueva);
+            em.persist(nueva); // el id sale ya de la secuencia
+        }
+        a.getPartidas().removeAll(sobrantes.subList(pares, sobrantes.size()));
+    }
 
-            a.addPartida(p);
+    /** Marca solo la primera partida que coincide: con removeIf no se borran dos lineas iguales por una pedida */
+    private static final class PrimeraIgual implements Predicate<Partida> {
+        private final Partida buscada;
+        private final boolean conImportes;
+        private boolean encontrada;
 
-            totalDebe  = totalDebe.add(debe);
-            totalHaber = totalHaber.add(haber);
+        private PrimeraIgual(Partida buscada, boolean conImportes) {
+            this.buscada = buscada;
+            this.conImportes = conImportes;
         }
 
-        if (totalDebe.compareTo(totalHaber) != 0) {
-            throw new IllegalArgumentException("El asiento no está balanceado (Debe ≠ Haber).");
+        @Override
+        public boolean test(Partida p) {
+            if (encontrada || !p.getCuenta().getId().equals(buscada.getCuenta().getId())) return false;
+            if (conImportes && (!mismoImporte(p.getDebe(), buscada.getDebe())
+                    || !mismoImporte(p.getHaber(), buscada.getHaber()))) return false;
+            encontrada = true;
+            return true;
         }
+    }
+
+    private static void copiarImportes(Partida desde, Partida hacia) {
+        if (!mismoImporte(hacia.getDebe(), desde.getDebe())) hacia.setDebe(desde.getDebe());
+        if (!mismoImporte(hacia.getHaber(), desde.getHaber())) hacia.setHaber(desde.getHaber());
+    }
+
+    /** compareTo: 100 y 100.00 son el mismo importe, no hace falta un UPDATE; null cuenta como cero */
+    private static boolean mismoImporte(BigDecimal a, BigDecimal b) {
+        return Optional.ofNullable(a).orElse(BigDecimal.ZERO).compareTo(Optional.ofNullable(b).orElse(BigDecimal.ZERO)) == 0;
+    }
 
-        return asientoRepo.save(a);
+    private static Partida copia(Partida p) {
+        Partida c = new Partida();
+        c.setId(p.getId());
+        c.setCuenta(p.getCuenta());
+        c.setDebe(p.getDebe());
+        c.setHaber(p.getHaber());
+        c.setFecha(p.getFecha());     // donde estaba en el mayor de la cuenta, para recalcular el saldo acumulado
+        c.setAsiento(p.getAsiento());
+        return c;
     }
 
     @Override
@@ -162,6 +429,8 @@ public class AsientoServiceImpl  implements AsientoService {
     public void eliminar(Long id) {
         Asiento a = asientoRepo.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Asiento no encontrado: " + id));
+        periodoService.validarFechaAbierta(a.getFecha());
+        saldoService.ajustar(a.getPartidas(), List.of()); // resta el asiento de los saldos
         asientoRepo.delete(a);
     }
 }
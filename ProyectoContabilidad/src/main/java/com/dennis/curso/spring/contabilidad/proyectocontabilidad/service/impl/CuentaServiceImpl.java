@@ -1,8 +1,10 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
 
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.CuentaRepository;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PartidaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.SaldoCuentaRepository;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.CuentaService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,10 +18,15 @@ public class CuentaServiceImpl implements CuentaService {
 
     private final CuentaRepository repo;
     private final PartidaRepository partidaRepo;
+    private final SaldoCuentaRepository saldoRepo;
+    private final CatalogoCuentas catalogo;
 
-    public CuentaServiceImpl(CuentaRepository repo, PartidaRepository partidaRepo) {//
+    public CuentaServiceImpl(CuentaRepository repo, PartidaRepository partidaRepo, SaldoCuentaRepository saldoRepo,
+                             CatalogoCuentas catalogo) {//
         this.repo = repo;
         this.partidaRepo = partidaRepo;
+        this.saldoRepo = saldoRepo;
+        this.catalogo = catalogo;
     }
 
 
@@ -31,7 +38,11 @@ public class CuentaServiceImpl implements CuentaService {
     }
 
     @Override
-    public Cuenta save(Cuenta c){return repo.save(c);} //implementacion para guardar una cuenta
+    public Cuenta save(Cuenta c){ //implementacion para guardar una cuenta
+        Cuenta guardada = repo.save(c);
+        catalogo.registrar(guardada);
+        return guardada;
+    }
 
     @Override
     public boolean exists(String id){return repo.existsById(id);} //implementacion para verificar si una cuesta existe
@@ -46,7 +57,9 @@ public class CuentaServiceImpl implements CuentaService {
         if (movimientos > 0) {
             throw new IllegalStateException("No se puede eliminar: la cuenta tiene movimientos (" + movimientos + ")");
         }
+        saldoRepo.deleteById(id); // la fila de saldo queda en cero cuando se borran sus asientos
         repo.deleteById(id);
+        catalogo.quitar(id);
 
     }
 
@@ -60,7 +73,7 @@ public class CuentaServiceImpl implements CuentaService {
         if (body.getTipo() != null)   c.setTipo(body.getTipo().trim());
         if (body.getActivo() != null) c.setActivo(body.getActivo());
 
-
+        catalogo.registrar(c);
         return c;
     }
 
@@ -70,6 +83,7 @@ public class CuentaServiceImpl implements CuentaService {
         Cuenta c = repo.findById(id)
                 .orElseThrow(() -> new NoSuchElementException("La cuenta " + id + " no existe"));
         c.setActivo(false);
+        catalogo.registrar(c);
     }
 
     @Override
@@ -78,5 +92,6 @@ public class CuentaServiceImpl implements CuentaService {
         Cuenta c = repo.findById(id)
                 .orElseThrow(() -> new NoSuchElementException("La cuenta " + id + " no existe"));
         c.setActivo(true);
+        catalogo.registrar(c);
     }
 }
@@ -0,0 +1,188 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.config.Hilos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.CambioSaldos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.LibroCambiado;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.SaldoCuentaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.EventosSaldosService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reparte los cambios de saldo a los clientes conectados por SSE. Publicar nunca bloquea al que confirma
+ * el asiento: cada cliente tiene su cola acotada y un hilo del pool la vacia escribiendo en su conexion.
+ * Si un cliente no lee y se le llena la cola, lo pendiente se descarta y recibe un solo evento "recargar"
+ * para que vuelva a pedir los reportes. Un cliente lento puede ocupar un hilo del pool mientras escribe,
+ * pero no frena los asientos ni llena la memoria.
+ */
+@Service
+public class EventosSaldosServiceImpl implements EventosSaldosService {
+
+    private final VersionLibro version;
+    private final SaldoCuentaRepository saldoRepo;
+    private final int capacidad;
+    private final Duration duracion;
+    private final Duration latido;
+    private final ScheduledExecutorService executor;
+    private final Set<Oyente> oyentes = ConcurrentHashMap.newKeySet();
+    private final Counter desbordes;
+
+    /** nombre null = comentario de latido, mantiene viva la conexion y detecta clientes que se fueron */
+    private record Aviso(String nombre, String id, Object datos) {
+    }
+
+    public EventosSaldosServiceImpl(VersionLibro version, SaldoCuentaRepository saldoRepo, MeterRegistry registry,
+                                    @Value("${app.saldos.eventos.hilos:2}") int hilos,
+                                    @Value("${app.saldos.eventos.cola:256}") int capacidad,
+                                    @Value("${app.saldos.eventos.duracion:PT30M}") Duration duracion,
+                                    @Value("${app.saldos.eventos.latido:PT30S}") Duration latido) {
+        this.version = version;
+        this.saldoRepo = saldoRepo;
+        this.capacidad = capacidad;
+        this.duracion = duracion;
+        this.latido = latido;
+        this.executor = Executors.newScheduledThreadPool(Math.max(1, hilos), Hilos.daemon("eventos-saldos"));
+        Gauge.builder("contabilidad.eventos.oyentes", oyentes, Set::size).register(registry);
+        this.desbordes = Counter.builder("contabilidad.eventos.desbordes").register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void iniciar() {
+        executor.scheduleWithFixedDelay(() -> oyentes.forEach(o -> o.encolar(new Aviso(null, null, "latido"))),
+                latido.toMillis(), latido.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void cerrar() {
+        executor.shutdownNow();
+        oyentes.forEach(o -> o.emitter.complete());
+    }
+
+    /**
+     * Al conectar se manda la version actual. Si el cliente se reconecta (EventSource manda el id del ultimo
+     * evento) y la version ya no es esa, se perdio avisos mientras estaba desconectado: recibe "recargar".
+     */
+    @Override
+    public SseEmitter suscribir(String ultimoId) {
+        SseEmitter emitter = new SseEmitter(duracion.toMillis()); // al vencer el navegador se reconecta solo
+        Oyente o = new Oyente(emitter);
+        emitter.onCompletion(() -> oyentes.remove(o));
+        emitter.onTimeout(() -> oyentes.remove(o));
+        emitter.onError(e -> oyentes.remove(o));
+        oyentes.add(o);
+
+        String actual = version.etiqueta();
+        boolean perdio = ultimoId != null && !ultimoId.equals(actual);
+        o.encolar(new Aviso(perdio ? "recargar" : "version", actual, Map.of("version", actual)));
+        return emitter;
+    }
+
+    @Override
+    public boolean hayOyentes() {
+        return !oyentes.isEmpty();
+    }
+
+    @Override
+    public void publicar(CambioSaldos cambio) {
+        Aviso aviso = new Aviso("saldos", cambio.version(), cambio);
+        for (Oyente o : oyentes) o.encolar(aviso);
+    }
+
+    /**
+     * Con clientes conectados lee el saldo que quedo en las cuentas que cambiaron, dentro de la transaccion del
+     * asiento, y lo publica al confirmar despues de que sube la version (orden LibroCambiado.EVENTOS).
+     */
+    @EventListener
+    void libroCambiado(LibroCambiado cambio) {
+        if (!hayOyentes() || cambio.deltas().isEmpty()) return;
+
+        Map<String, BigDecimal> saldos = new HashMap<>();
+        for (TotalCuenta t : saldoRepo.totalesDe(cambio.deltas().stream().map(LibroCambiado.Delta::cuentaId).toList())) {
+            saldos.put(t.cuentaId(), t.saldo());
+        }
+        List<CambioSaldos.Delta> cuentas = cambio.deltas().stream()
+                .map(d -> new CambioSaldos.Delta(d.cuentaId(), d.debe(), d.haber(), saldos.get(d.cuentaId())))
+                .toList();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return LibroCambiado.EVENTOS;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) publicar(new CambioSaldos(version.etiqueta(), cuentas));
+            }
+        });
+    }
+
+    private final class Oyente implements Runnable {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Aviso> cola = new ArrayBlockingQueue<>(capacidad);
+        private final AtomicBoolean programado = new AtomicBoolean();
+
+        private Oyente(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void encolar(Aviso aviso) {
+            if (!cola.offer(aviso)) {
+                // no da abasto: lo pendiente ya no sirve, que vuelva a pedir los reportes
+                desbordes.increment();
+                cola.clear();
+                String actual = version.etiqueta();
+                cola.offer(new Aviso("recargar", actual, Map.of("version", actual)));
+            }
+            if (programado.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException apagando) {
+                    programado.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Aviso a;
+                while ((a = cola.poll()) != null) {
+                    emitter.send(a.nombre() == null
+                            ? SseEmitter.event().comment(a.datos().toString())
+                            : SseEmitter.event().name(a.nombre()).id(a.id()).data(a.datos(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // el cliente cerro la conexion o el emitter ya termino; el contenedor completa el emitter
+                oyentes.remove(this);
+                cola.clear();
+                return;
+            } finally {
+                programado.set(false);
+            }
+            // algo llego entre el ultimo poll y soltar la marca
+            if (!cola.isEmpty() && programado.compareAndSet(false, true)) executor.execute(this);
+        }
+    }
+}
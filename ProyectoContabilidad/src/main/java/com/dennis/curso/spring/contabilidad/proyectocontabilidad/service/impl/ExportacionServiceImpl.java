@@ -0,0 +1,182 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.ExportacionService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.MayorService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.MayorVisitor;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+@Service
+public class ExportacionServiceImpl implements ExportacionService {
+    //cada fila se escribe en cuanto llega del cursor, la memoria no depende del tamaño del libro
+
+    private static final String[] COLUMNAS_DIARIO =
+            {"asientoId", "fecha", "descripcion", "partidaId", "cuentaId", "nombre", "debe", "haber"};
+    private static final String[] COLUMNAS_MAYOR =
+            {"cuentaId", "nombre", "fecha", "descripcion", "debe", "haber", "saldoAcumulado"};
+
+    private final MovimientoJdbcRepository movimientoRepo;
+    private final MayorService mayorService;
+    private final ObjectMapper objectMapper;
+
+    public ExportacionServiceImpl(MovimientoJdbcRepository movimientoRepo, MayorService mayorService,
+                                  ObjectMapper objectMapper) {
+        this.movimientoRepo = movimientoRepo;
+        this.mayorService = mayorService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportarDiario(RangoFechas rango, Formato formato, OutputStream out) {
+        try (Escritor e = escritor(formato, out, COLUMNAS_DIARIO)) {
+            movimientoRepo.recorrerDiario(rango.desde(), rango.hasta(), rs -> {
+                java.sql.Date fecha = rs.getDate("fecha");
+                e.fila(rs.getLong("asiento_id"),
+                        fecha == null ? null : fecha.toLocalDate(),
+                        rs.getString("descripcion"),
+                        rs.getLong("partida_id"),
+                        rs.getString("cuenta_id"),
+                        rs.getString("nombre"),
+                        rs.getBigDecimal("debe"),
+                        rs.getBigDecimal("haber"));
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportarMayor(RangoFechas rango, Formato formato, OutputStream out) {
+        try (Escritor e = escritor(formato, out, COLUMNAS_MAYOR)) {
+            mayorService.recorrerMayor(rango.desde(), rango.hasta(), new MayorVisitor() {
+                private String cuentaId;
+                private String nombre;
+
+                @Override
+                public void inicioCuenta(String cuentaId, String nombre) {
+                    this.cuentaId = cuentaId;
+                    this.nombre = nombre;
+                }
+
+                @Override
+                public void movimiento(LocalDate fecha, String descripcion, BigDecimal debe, BigDecimal haber, BigDecimal saldoAcumulado) {
+                    e.fila(cuentaId, nombre, fecha, descripcion, debe, haber, saldoAcumulado);
+                }
+
+                @Override
+                public void finCuenta(String cuentaId, BigDecimal debe, BigDecimal haber, BigDecimal saldo) {
+                }
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private Escritor escritor(Formato formato, OutputStream out, String[] columnas) throws IOException {
+        return switch (formato) {
+            case CSV -> new EscritorCsv(out, columnas);
+            case NDJSON -> new EscritorNdjson(objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET), columnas); // el stream lo cierra quien lo abrio
+        };
+    }
+
+    /** Escribe una fila con los valores en el orden de las columnas; close vacia el buffer pero no cierra el stream */
+    private interface Escritor extends Closeable {
+        void fila(Object... valores);
+    }
+
+    private static final class EscritorCsv implements Escritor {
+        private final Writer w;
+
+        private EscritorCsv(OutputStream out, String[] columnas) throws IOException {
+            this.w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            escribirLinea(columnas);
+        }
+
+        @Override
+        public void fila(Object... valores) {
+            try {
+                escribirLinea(valores);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void escribirLinea(Object[] valores) throws IOException {
+            for (int i = 0; i < valores.length; i++) {
+                if (i > 0) w.write(',');
+                escribirCampo(valores[i]);
+            }
+            w.write("\r\n"); // RFC 4180
+        }
+
+        private void escribirCampo(Object valor) throws IOException {
+            if (valor == null) return;
+            String s = valor instanceof BigDecimal b ? b.toPlainString() : valor.toString();
+            boolean comillas = false;
+            for (int i = 0; i < s.length() && !comillas; i++) {
+                char c = s.charAt(i);
+                comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!comillas) {
+                w.write(s);
+                return;
+            }
+            w.write('"');
+            w.write(s.replace("\"", "\"\""));
+            w.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            w.flush();
+        }
+    }
+
+    private static final class EscritorNdjson implements Escritor {
+        private final JsonGenerator gen;
+        private final String[] columnas;
+
+        private EscritorNdjson(JsonGenerator gen, String[] columnas) {
+            this.gen = gen;
+            this.columnas = columnas;
+            gen.setRootValueSeparator(null); // el separador entre objetos es el salto de linea
+        }
+
+        @Override
+        public void fila(Object... valores) {
+            try {
+                gen.writeStartObject();
+                for (int i = 0; i < columnas.length; i++) {
+                    Object v = valores[i];
+                    gen.writeFieldName(columnas[i]);
+                    if (v == null) gen.writeNull();
+                    else if (v instanceof BigDecimal b) gen.writeNumber(b);
+                    else if (v instanceof Long l) gen.writeNumber(l);
+                    else gen.writeString(v.toString()); // fechas en ISO (yyyy-MM-dd)
+                }
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            gen.close(); // vacia el buffer, AUTO_CLOSE_TARGET esta apagado
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RespuestaIdempotente;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.RespuestaIdempotenteRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.IdempotenciaService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Respuestas por Idempotency-Key en memoria, con vencimiento y un maximo de claves (se van las mas viejas).
+ * La primera peticion con una clave deja un CompletableFuture; las que llegan mientras tanto con la misma clave
+ * lo esperan en vez de ejecutar otra vez, y las posteriores reciben la respuesta guardada. Si la primera falla
+ * la clave se libera: el error llega tambien a las que esperaban y un reintento vuelve a ejecutar.
+ * Con app.idempotencia.persistente la respuesta tambien se guarda en la BD y sobrevive a un reinicio.
+ */
+@Service
+public class IdempotenciaServiceImpl implements IdempotenciaService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaServiceImpl.class);
+    private static final int LARGO_MAXIMO = 100;
+    static final String REPETIDA = "Idempotent-Replayed";
+
+    private final ObjectMapper objectMapper;
+    private final RespuestaIdempotenteRepository repo;
+    private final boolean persistente;
+    private final long vigencia;
+    private final Duration espera;
+    private final int maximo;
+    private final Map<String, Entrada> entradas = new LinkedHashMap<>(); // orden de llegada = orden de vencimiento
+    private long ultimaLimpieza;
+
+    private record Guardada(int estado, String cuerpo) {
+    }
+
+    private record Entrada(String hash, long creada, CompletableFuture<Guardada> respuesta) {
+    }
+
+    public IdempotenciaServiceImpl(ObjectMapper objectMapper, RespuestaIdempotenteRepository repo,
+                                   @Value("${app.idempotencia.persistente:false}") boolean persistente,
+                                   @Value("${app.idempotencia.vigencia:PT24H}") Duration vigencia,
+                                   @Value("${app.idempotencia.espera:PT30S}") Duration espera,
+                                   @Value("${app.idempotencia.maximo:10000}") int maximo) {
+        this.objectMapper = objectMapper;
+        this.repo = repo;
+        this.persistente = persistente;
+        this.vigencia = vigencia.toMillis();
+        this.espera = espera;
+        this.maximo = Math.max(1, maximo);
+    }
+
+    @Override
+    public ResponseEntity<?> ejecutar(String ruta, String clave, Object peticion, Supplier<ResponseEntity<?>> accion) {
+        if (clave == null || clave.isBlank()) return accion.get();
+        if (clave.length() > LARGO_MAXIMO) {
+            throw new IllegalArgumentException("Idempotency-Key admite hasta " + LARGO_MAXIMO + " caracteres.");
+        }
+        String id = ruta + " " + clave;
+        String hash = hash(peticion);
+        long ahora = System.currentTimeMillis();
+
+        Entrada propia = new Entrada(hash, ahora, new CompletableFuture<>());
+        Entrada previa;
+        synchronized (entradas) {
+            purgar(ahora);
+            previa = entradas.putIfAbsent(id, propia);
+        }
+        if (previa != null) return repetir(previa, hash);
+
+        // primera vez en esta instancia: puede estar guardada de antes de un reinicio
+        RespuestaIdempotente guardada = persistente
+                ? repo.findById(id).filter(r -> r.getCreada() >= ahora - vigencia).orElse(null)
+                : null;
+        if (guardada != null) {
+            Entrada anterior = new Entrada(guardada.getHashPeticion(), guardada.getCreada(), propia.respuesta());
+            synchronized (entradas) {
+                entradas.replace(id, propia, anterior);
+            }
+            propia.respuesta().complete(new Guardada(guardada.getEstado(), guardada.getCuerpo()));
+            return repetir(anterior, hash);
+        }
+
+        ResponseEntity<?> respuesta;
+        Guardada r;
+        try {
+            respuesta = accion.get();
+            r = new Guardada(respuesta.getStatusCode().value(), objectMapper.writeValueAsString(respuesta.getBody()));
+        } catch (RuntimeException | JsonProcessingException e) {
+            synchronized (entradas) {
+                entradas.remove(id, propia);
+            }
+            propia.respuesta().completeExceptionally(e);
+            if (e instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e);
+        }
+        propia.respuesta().complete(r);
+        if (persistente) guardar(id, hash, r, ahora);
+        return respuesta;
+    }
+
+    /** Misma clave: con otro cuerpo es un error del cliente; con el mismo se espera o se repite la respuesta */
+    private ResponseEntity<?> repetir(Entrada entrada, String hash) {
+        if (!entrada.hash().equals(hash)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "La Idempotency-Key ya se uso con otra peticion.");
+        }
+        Guardada r;
+        try {
+            r = entrada.respuesta().get(espera.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "La peticion con esa Idempotency-Key todavia se esta procesando.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Peticion interrumpida.");
+        } catch (ExecutionException e) {
+            // la primera fallo: se responde el mismo error
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+        return ResponseEntity.status(r.estado())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPETIDA, "true")
+                .body(r.cuerpo());
+    }
+
+    /** Saca las vencidas (estan al principio) y, si sobran, las mas viejas */
+    private void purgar(long ahora) {
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            Entrada e = it.next();
+            boolean vencida = e.creada() < ahora - vigencia && e.respuesta().isDone();
+            if (!vencida && entradas.size() < maximo) break;
+            it.remove();
+        }
+    }
+
+    private void guardar(String id, String hash, Guardada r, long ahora) {
+        try {
+            repo.save(new RespuestaIdempotente(id, hash, r.estado(), r.cuerpo(), ahora));
+            if (ahora - ultimaLimpieza > vigencia) {
+                ultimaLimpieza = ahora;
+                repo.borrarAnteriores(ahora - vigencia);
+            }
+        } catch (RuntimeException e) {
+            // la accion ya se hizo; sin la copia en la BD sigue valiendo la de memoria
+            log.warn("No se pudo guardar la respuesta de {}", id, e);
+        }
+    }
+
+    private String hash(Object peticion) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(peticion); // el JSON ya parseado: espacios y formato no cuentan
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,73 +1,265 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
 
 
-import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
-import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Partida;
-import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.AsientoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AcumuladorCentavos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.CuentaMayor;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.MovimientoCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Pagina;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository.Posicion;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.MayorService;
-import org.hibernate.query.NativeQuery;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.MayorVisitor;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.LongConsumer;
 
 @Service
+@Timed("contabilidad.mayor")
 public class MayorServiceImpl implements MayorService {
-    private final AsientoRepository asientoRepository;
+    private final MovimientoJdbcRepository movimientoRepo;
+    private final ObjectMapper objectMapper;
+    private final MayorizacionParalela paralela;
+    private final CatalogoCuentas catalogo;
 
-    public MayorServiceImpl(AsientoRepository asientoRepository) {
-        this.asientoRepository = asientoRepository;
+    public MayorServiceImpl(MovimientoJdbcRepository movimientoRepo, ObjectMapper objectMapper,
+                            MayorizacionParalela paralela, CatalogoCuentas catalogo) {
+        this.movimientoRepo = movimientoRepo;
+        this.objectMapper = objectMapper;
+        this.paralela = paralela;
+        this.catalogo = catalogo;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Map<String, Object> generarMayor(){//inplementacion para generar el libro mayor
-        Iterable<Asiento> asientos = asientoRepository.findAll();
-
-        Map<String, Object> mayor = new LinkedHashMap<>();
-
-        for(Asiento asiento: asientos){
-            if(asiento.getPartidas() == null) continue;
-
-            for(Partida partida: asiento.getPartidas()){
-
-                if(partida.getCuenta() == null || partida.getCuenta().getId() == null) continue;
-                final String cuentaId = partida.getCuenta().getId();
-                final String nombre = Optional.ofNullable(partida.getCuenta().getNombre()).orElse(cuentaId);
-
-                @SuppressWarnings("unchecked")
-                Map<String, Object> lista = (Map<String, Object>) mayor.computeIfAbsent(cuentaId, id -> {
-                    Map<String, Object> mayor1 = new LinkedHashMap<>();
-                    mayor1.put("cuentaId", cuentaId);
-                    mayor1.put("nombre", nombre);
-                    mayor1.put("debe", BigDecimal.ZERO);
-                    mayor1.put("haber", BigDecimal.ZERO);
-                    mayor1.put("saldo", BigDecimal.ZERO);
-                    mayor1.put("movimientos", new ArrayList<Map<String, Object>>());
-                    return mayor1;
-                });
-
-                BigDecimal d = Optional.ofNullable(partida.getDebe()).orElse(BigDecimal.ZERO);
-                BigDecimal h = Optional.ofNullable(partida.getHaber()).orElse(BigDecimal.ZERO);
-                lista.put("debe",  ((BigDecimal) lista.get("debe")).add(d));
-                lista.put("haber", ((BigDecimal) lista.get("haber")).add(h));
-                BigDecimal nuevoSaldo = ((BigDecimal)lista.get("saldo")).add(d.subtract(h));
-                lista.put("saldo", nuevoSaldo);
-
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> movs = (List<Map<String, Object>>) lista.get("movimientos");
-                Map<String, Object> mov = new LinkedHashMap<>();
-
-                mov.put("fecha", asiento.getFecha());
-                mov.put("descripcion", asiento.getDescripcion());
-                mov.put("debe", d);
-                mov.put("haber", h);
-                mov.put("saldoAcumulado", nuevoSaldo);
-                movs.add(mov);
-
+    public Map<String, CuentaMayor> generarMayor(LocalDate desde, LocalDate hasta){//inplementacion para generar el libro mayor
+        if (paralela.conviene()) {
+            // cada tramo de cuentas arma su propio mapa; los tramos vienen en orden de cuenta y ninguna cuenta se parte
+            Optional<List<Map<String, CuentaMayor>>> tramos =
+                    paralela.porSubarbol((cuentaDesde, cuentaHasta) -> armarMayor(desde, hasta, cuentaDesde, cuentaHasta));
+            if (tramos.isPresent()) {
+                Map<String, CuentaMayor> mayor = new LinkedHashMap<>();
+                tramos.get().forEach(mayor::putAll);
+                return mayor;
             }
         }
+        return armarMayor(desde, hasta, null, null); // sin paralelo, o el libro cambio mientras corrian los tramos
+    }
+
+    private Map<String, CuentaMayor> armarMayor(LocalDate desde, LocalDate hasta, String cuentaDesde, String cuentaHasta) {
+        Map<String, CuentaMayor> mayor = new LinkedHashMap<>();
+
+        recorrer(desde, hasta, cuentaDesde, cuentaHasta, new MayorVisitor() {
+            private String nombre;
+            private List<CuentaMayor.Movimiento> movs;
+
+            @Override
+            public void inicioCuenta(String cuentaId, String nombre) {
+                this.nombre = nombre;
+                movs = new ArrayList<>();
+            }
+
+            @Override
+            public void movimiento(LocalDate fecha, String descripcion, BigDecimal debe, BigDecimal haber, BigDecimal saldoAcumulado) {
+                movs.add(new CuentaMayor.Movimiento(fecha, descripcion, debe, haber, saldoAcumulado));
+            }
+
+            @Override
+            public void finCuenta(String cuentaId, BigDecimal debe, BigDecimal haber, BigDecimal saldo) {
+                // los totales los lleva el Recorrido, la cuenta se arma una sola vez al cerrarla
+                mayor.put(cuentaId, new CuentaMayor(cuentaId, nombre, debe, haber, saldo, movs));
+            }
+        });
         return mayor;
     }
+
+    /**
+     * Lee las partidas ya ordenadas por cuenta, fecha y asiento en una sola consulta
+     * y va avisando al visitor; solo guarda los totales de la cuenta en curso.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void recorrerMayor(LocalDate desde, LocalDate hasta, MayorVisitor visitor) {
+        recorrer(desde, hasta, null, null, visitor);
+    }
+
+    private void recorrer(LocalDate desde, LocalDate hasta, String cuentaDesde, String cuentaHasta, MayorVisitor visitor) {
+        Recorrido recorrido = new Recorrido(visitor);
+        movimientoRepo.recorrerMayor(desde, hasta, cuentaDesde, cuentaHasta, rs -> {
+            BigDecimal d = Optional.ofNullable(rs.getBigDecimal("debe")).orElse(BigDecimal.ZERO);
+            BigDecimal h = Optional.ofNullable(rs.getBigDecimal("haber")).orElse(BigDecimal.ZERO);
+            java.sql.Date fecha = rs.getDate("fecha");
+            recorrido.fila(rs.getString("cuenta_id"), rs.getString("nombre"),
+                    fecha == null ? null : fecha.toLocalDate(), rs.getString("descripcion"), d, h);
+        });
+        recorrido.terminar();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void escribirMayor(LocalDate desde, LocalDate hasta, OutputStream out) {
+        escribirMayor(desde, hasta, out, n -> { });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void escribirMayor(LocalDate desde, LocalDate hasta, OutputStream out, LongConsumer avance) {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) { // el stream lo cierra quien lo abrio
+            EscritorJson escritor = new EscritorJson(gen, avance);
+            gen.writeStartObject();
+            recorrerMayor(desde, hasta, escritor);
+            gen.writeEndObject();
+            avance.accept(escritor.movimientos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Una pagina del mayor de la cuenta con el saldo acumulado que guarda cada partida: se lee solo el tramo
+     * pedido del indice por cuenta y fecha, sin sumar desde el principio. Pide una fila de mas para saber
+     * si hay otra pagina.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Pagina<MovimientoCuenta> mayorDeCuenta(String cuentaId, LocalDate desde, LocalDate hasta, String cursor, int limite) {
+        if (limite < 1) {
+            throw new IllegalArgumentException("El limite debe ser mayor que cero.");
+        }
+        List<MovimientoCuenta> items = new ArrayList<>(movimientoRepo.paginaMayor(cuentaId, desde, hasta,
+                leerCursor(cursor), limite + 1, (rs, i) -> {
+                    java.sql.Date fecha = rs.getDate("fecha");
+                    return new MovimientoCuenta(rs.getLong("id"), rs.getLong("asiento_id"),
+                            fecha == null ? null : fecha.toLocalDate(), rs.getString("descripcion"),
+                            Optional.ofNullable(rs.getBigDecimal("debe")).orElse(BigDecimal.ZERO),
+                            Optional.ofNullable(rs.getBigDecimal("haber")).orElse(BigDecimal.ZERO),
+                            rs.getBigDecimal("saldo_acumulado"));
+                }));
+        if (items.isEmpty() && catalogo.buscar(cuentaId).isEmpty()) {
+            throw new IllegalArgumentException("Cuenta no encontrada: " + cuentaId);
+        }
+        boolean hayMas = items.size() > limite;
+        if (hayMas) items = items.subList(0, limite);
+
+        MovimientoCuenta ultimo = items.isEmpty() ? null : items.get(items.size() - 1);
+        return new Pagina<>(items, hayMas
+                ? (ultimo.fecha() == null ? "" : ultimo.fecha().toString()) + "_" + ultimo.asientoId() + "_" + ultimo.partidaId()
+                : null);
+    }
+
+    /** formato: "<fecha>_<asiento>_<partida>", la fecha va vacia si el asiento no tiene fecha */
+    private static Posicion leerCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        String[] partes = cursor.split("_", -1);
+        try {
+            if (partes.length != 3) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            return new Posicion(partes[0].isEmpty() ? null : LocalDate.parse(partes[0]),
+                    Long.parseLong(partes[1]), Long.parseLong(partes[2]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+
+    /** Lleva los acumulados de la cuenta actual (en centavos) y detecta el cambio de cuenta */
+    private static final class Recorrido {
+        private final MayorVisitor visitor;
+        private final AcumuladorCentavos debe = new AcumuladorCentavos();
+        private final AcumuladorCentavos haber = new AcumuladorCentavos();
+        private final AcumuladorCentavos saldo = new AcumuladorCentavos();
+        private String cuentaId;
+
+        private Recorrido(MayorVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        private void fila(String id, String nombre, LocalDate fecha, String descripcion, BigDecimal d, BigDecimal h) {
+            if (id == null) return;
+            if (!id.equals(cuentaId)) {
+                terminar();
+                cuentaId = id;
+                debe.reiniciar();
+                haber.reiniciar();
+                saldo.reiniciar();
+                visitor.inicioCuenta(id, Optional.ofNullable(nombre).orElse(id));
+            }
+            debe.sumar(d);
+            haber.sumar(h);
+            saldo.sumar(d).restar(h);
+            visitor.movimiento(fecha, descripcion, d, h, saldo.valor());
+        }
+
+        private void terminar() {
+            if (cuentaId != null) visitor.finCuenta(cuentaId, debe.valor(), haber.valor(), saldo.valor());
+            cuentaId = null;
+        }
+    }
+
+    /** Escribe cada cuenta en cuanto se lee; los totales van al final porque se conocen al cerrar la cuenta */
+    private static final class EscritorJson implements MayorVisitor {
+        private static final int AVISAR_CADA = 1000;
+
+        private final JsonGenerator gen;
+        private final LongConsumer avance;
+        private long movimientos;
+
+        private EscritorJson(JsonGenerator gen, LongConsumer avance) {
+            this.gen = gen;
+            this.avance = avance;
+        }
+
+        @Override
+        public void inicioCuenta(String cuentaId, String nombre) {
+            try {
+                gen.writeObjectFieldStart(cuentaId);
+                gen.writeStringField("cuentaId", cuentaId);
+                gen.writeStringField("nombre", nombre);
+                gen.writeArrayFieldStart("movimientos");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void movimiento(LocalDate fecha, String descripcion, BigDecimal debe, BigDecimal haber, BigDecimal saldoAcumulado) {
+            try {
+                gen.writeStartObject();
+                gen.writeFieldName("fecha");
+                gen.writeObject(fecha);
+                gen.writeStringField("descripcion", descripcion);
+                gen.writeNumberField("debe", debe);
+                gen.writeNumberField("haber", haber);
+                gen.writeNumberField("saldoAcumulado", saldoAcumulado);
+                gen.writeEndObject();
+                if (++movimientos % AVISAR_CADA == 0) avance.accept(movimientos);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finCuenta(String cuentaId, BigDecimal debe, BigDecimal haber, BigDecimal saldo) {
+            try {
+                gen.writeEndArray();
+                gen.writeNumberField("debe", debe);
+                gen.writeNumberField("haber", haber);
+                gen.writeNumberField("saldo", saldo);
+                gen.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
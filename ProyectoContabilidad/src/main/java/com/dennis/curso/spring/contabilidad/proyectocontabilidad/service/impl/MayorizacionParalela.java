@@ -0,0 +1,210 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.JerarquiaCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository.RangoIds;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Mayorizacion en paralelo para libros grandes: parte las partidas en tramos (por id o por subarbol
+ * de cuentas), cada tarea suma en su propio mapa y los mapas se juntan al unir las tareas.
+ * Cada tramo es una consulta en su propia transaccion readOnly (va a la replica si esta al dia) con su
+ * propia conexion: nunca hay mas de hilos tramos a la vez en toda la aplicacion, y BulkheadConfig los
+ * descuenta de los reportes.
+ * Los tramos no comparten la foto de la transaccion del que llama. Si el libro cambio mientras corrian, o
+ * habia asientos sin terminar, el resultado se descarta (Optional vacio) y el que llama hace la consulta
+ * secuencial de siempre, igual que por debajo del umbral o apagada. Solo ve los cambios de esta instancia.
+ */
+@Component
+public class MayorizacionParalela {
+
+    private final MovimientoJdbcRepository movimientoRepo;
+    private final CatalogoCuentas catalogo;
+    private final VersionLibro version;
+    private final TransactionTemplate lectura;
+    private final boolean habilitada;
+    private final long umbral;
+    private final int hilos;
+    private final ForkJoinPool pool;
+    private final Semaphore conexiones; // el pool puede correr algun tramo de mas mientras otro espera un join
+
+    public MayorizacionParalela(MovimientoJdbcRepository movimientoRepo, CatalogoCuentas catalogo,
+                                VersionLibro version, PlatformTransactionManager txManager,
+                                @Value("${app.mayorizacion.paralela:false}") boolean habilitada,
+                                @Value("${app.mayorizacion.umbral:200000}") long umbral,
+                                @Value("${app.mayorizacion.hilos:2}") int hilos) {
+        this.movimientoRepo = movimientoRepo;
+        this.catalogo = catalogo;
+        this.version = version;
+        this.lectura = new TransactionTemplate(txManager);
+        this.lectura.setReadOnly(true);
+        this.habilitada = habilitada;
+        this.umbral = umbral;
+        this.hilos = Math.max(1, hilos);
+        this.pool = new ForkJoinPool(this.hilos);
+        this.conexiones = new Semaphore(this.hilos, true);
+    }
+
+    @PreDestroy
+    void cerrar() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * true si esta habilitada, no hay asientos a medio guardar y el libro tiene al menos umbral partidas
+     * (estimado por el rango de ids)
+     */
+    public boolean conviene() {
+        if (!habilitada || version.enCurso() > 0) return false;
+        RangoIds ids = movimientoRepo.rangoIds();
+        return ids != null && ids.tamano() >= umbral;
+    }
+
+    /**
+     * Totales por cuenta partiendo el libro por rango de id de partida. Da las mismas sumas que
+     * PartidaRepository.totalesPorCuentaEntre, ordenadas por cuenta; vacio si el libro cambio entremedio.
+     */
+    public Optional<List<TotalCuenta>> totales(LocalDate desde, LocalDate hasta) {
+        long antes = version.actual();
+        RangoIds ids = movimientoRepo.rangoIds();
+        if (ids == null) return Optional.of(List.of());
+        long bloque = Math.max(1, ids.tamano() / (hilos * 2L)); // dos tramos por hilo para repartir mejor
+        Map<String, TotalCuenta> suma = pool.invoke(new TotalesTramo(desde, hasta, ids.desde(), ids.hasta(), bloque));
+        return sinCambios(antes) ? Optional.of(new ArrayList<>(suma.values())) : Optional.empty();
+    }
+
+    /**
+     * Ejecuta la tarea por cada tramo de cuentas [desde, hasta) y devuelve los resultados en el orden
+     * de los ids de cuenta. Los cortes son inicios de subarbol del catalogo; el primer y el ultimo tramo
+     * no tienen limite, asi una cuenta que el cache todavia no conoce no se pierde. Vacio si el libro
+     * cambio entremedio.
+     */
+    public <T> Optional<List<T>> porSubarbol(BiFunction<String, String, T> tarea) {
+        long antes = version.actual();
+        List<String> cortes = cortes(hilos * 2);
+        List<String> limites = new ArrayList<>(cortes.size() + 2);
+        limites.add(null);
+        limites.addAll(cortes);
+        limites.add(null);
+        List<T> tramos = pool.invoke(new Tramos<>(tarea, limites, 0, limites.size() - 1));
+        return sinCambios(antes) ? Optional.of(tramos) : Optional.empty();
+    }
+
+    /**
+     * Nada se confirmo desde que se leyo la version antes: cada asiento marca el cambio antes de su commit y
+     * deja de estar en curso despues de subir la version, asi que un commit entremedio deja una de las dos
+     * cosas a la vista.
+     */
+    private boolean sinCambios(long antes) {
+        return version.enCurso() == 0 && version.actual() == antes;
+    }
+
+    /** Un tramo: espera su lugar entre los hilos tramos a la vez y consulta en una transaccion readOnly */
+    private <T> T consultar(Supplier<T> consulta) {
+        try {
+            conexiones.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Mayorizacion interrumpida", e);
+        }
+        try {
+            return lectura.execute(status -> consulta.get());
+        } finally {
+            conexiones.release();
+        }
+    }
+
+    /** Inicios de subarbol ordenados: primero los grupos de primer nivel y, si faltan, sus hijos */
+    private List<String> cortes(int partes) {
+        JerarquiaCuentas jerarquia = catalogo.jerarquia();
+        TreeSet<String> cortes = new TreeSet<>(jerarquia.hijos(""));
+        Deque<String> pendientes = new ArrayDeque<>(cortes);
+        while (cortes.size() < partes && !pendientes.isEmpty()) {
+            List<String> hijos = jerarquia.hijos(pendientes.poll());
+            cortes.addAll(hijos);
+            pendientes.addAll(hijos);
+        }
+        return new ArrayList<>(cortes);
+    }
+
+    /** Suma un tramo de ids; si es grande lo parte en dos, cada mitad con su propio mapa */
+    private final class TotalesTramo extends RecursiveTask<Map<String, TotalCuenta>> {
+        private final LocalDate desde;
+        private final LocalDate hasta;
+        private final long idDesde;
+        private final long idHasta;
+        private final long bloque;
+
+        private TotalesTramo(LocalDate desde, LocalDate hasta, long idDesde, long idHasta, long bloque) {
+            this.desde = desde;
+            this.hasta = hasta;
+            this.idDesde = idDesde;
+            this.idHasta = idHasta;
+            this.bloque = bloque;
+        }
+
+        @Override
+        protected Map<String, TotalCuenta> compute() {
+            if (idHasta - idDesde + 1 <= bloque) {
+                Map<String, TotalCuenta> suma = new TreeMap<>();
+                for (TotalCuenta t : consultar(() -> movimientoRepo.totalesPorCuenta(desde, hasta, idDesde, idHasta))) {
+                    suma.put(t.cuentaId(), t);
+                }
+                return suma;
+            }
+            long medio = idDesde + (idHasta - idDesde) / 2;
+            TotalesTramo izquierda = new TotalesTramo(desde, hasta, idDesde, medio, bloque);
+            izquierda.fork();
+            Map<String, TotalCuenta> suma = new TotalesTramo(desde, hasta, medio + 1, idHasta, bloque).compute();
+            // BigDecimal suma exacto, el orden de los tramos no cambia el resultado
+            izquierda.join().forEach((id, t) -> suma.merge(id, t, TotalCuenta::sumar));
+            return suma;
+        }
+    }
+
+    /** Tramos de cuentas entre limites[i] y limites[i + 1], el resultado conserva el orden de los tramos */
+    private final class Tramos<T> extends RecursiveTask<List<T>> {
+        private final BiFunction<String, String, T> tarea;
+        private final List<String> limites;
+        private final int inicio;
+        private final int fin; // exclusivo, en tramos
+
+        private Tramos(BiFunction<String, String, T> tarea, List<String> limites, int inicio, int fin) {
+            this.tarea = tarea;
+            this.limites = limites;
+            this.inicio = inicio;
+            this.fin = fin;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (fin - inicio == 1) {
+                List<T> out = new ArrayList<>(1);
+                out.add(consultar(() -> tarea.apply(limites.get(inicio), limites.get(fin))));
+                return out;
+            }
+            int medio = (inicio + fin) >>> 1;
+            Tramos<T> izquierda = new Tramos<>(tarea, limites, inicio, medio);
+            izquierda.fork();
+            List<T> derecha = new Tramos<>(tarea, limites, medio, fin).compute();
+            List<T> out = izquierda.join();
+            out.addAll(derecha);
+            return out;
+        }
+    }
+}
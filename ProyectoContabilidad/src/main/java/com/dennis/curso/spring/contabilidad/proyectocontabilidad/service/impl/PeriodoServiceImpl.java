@@ -0,0 +1,122 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Periodo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.SaldoPeriodo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PeriodoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.SaldoPeriodoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.PeriodoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Service
+public class PeriodoServiceImpl implements PeriodoService {
+
+    private final PeriodoRepository periodoRepo;
+    private final SaldoPeriodoRepository saldoPeriodoRepo;
+    private final SaldoCuentaService saldoService;
+    private final EntityManager em;
+
+    public PeriodoServiceImpl(PeriodoRepository periodoRepo, SaldoPeriodoRepository saldoPeriodoRepo,
+                              SaldoCuentaService saldoService, EntityManager em) {
+        this.periodoRepo = periodoRepo;
+        this.saldoPeriodoRepo = saldoPeriodoRepo;
+        this.saldoService = saldoService;
+        this.em = em;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Periodo> findAll() {
+        return periodoRepo.findAllByOrderByFechaInicioAsc();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Periodo findById(Long id) {
+        return periodoRepo.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Periodo no encontrado: " + id));
+    }
+
+    @Override
+    @Transactional
+    public Periodo crear(Periodo p) { //implementacion para crear un periodo, siempre nace abierto
+        if (p.getFechaInicio().isAfter(p.getFechaFin())) {
+            throw new IllegalArgumentException("La fecha de inicio no puede ser mayor que la fecha fin.");
+        }
+        if (periodoRepo.existeCruce(p.getFechaInicio(), p.getFechaFin())) {
+            throw new IllegalArgumentException("El periodo se cruza con otro periodo existente.");
+        }
+        p.setId(null);
+        p.setCerrado(false);
+        return periodoRepo.save(p);
+    }
+
+    /**
+     * Guarda el saldo acumulado de cada cuenta a la fecha fin del periodo. Se calcula con el
+     * cierre anterior mas las partidas del periodo, asi cada cierre solo lee su propio periodo.
+     * Antes de sumar bloquea el periodo: espera a los asientos en curso con fecha en el (tienen el lock
+     * compartido de validarFechaAbierta) y los que llegan despues ya lo ven cerrado.
+     */
+    @Override
+    @Transactional
+    public Periodo cerrar(Long id) {
+        Periodo p = periodoRepo.bloquearParaCerrar(id)
+                .orElseThrow(() -> new IllegalArgumentException("Periodo no encontrado: " + id));
+        periodoRepo.bloquearExclusivo(id);
+        if (p.getCerrado()) {
+            throw new IllegalArgumentException("El periodo ya está cerrado.");
+        }
+        if (periodoRepo.existsByCerradoFalseAndFechaFinLessThan(p.getFechaInicio())) {
+            throw new IllegalArgumentException("Hay periodos anteriores abiertos, ciérrelos primero.");
+        }
+
+        List<TotalCuenta> saldos = saldoService.totales(new RangoFechas(null, p.getFechaFin()));
+        for (TotalCuenta t : saldos) {
+            Cuenta cuenta = em.getReference(Cuenta.class, t.cuentaId());
+            saldoPeriodoRepo.save(new SaldoPeriodo(p, cuenta, t.debe(), t.haber()));
+        }
+        p.setCerrado(true);
+        return p;
+    }
+
+    @Override
+    @Transactional
+    public Periodo reabrir(Long id) {
+        Periodo p = findById(id);
+        if (!p.getCerrado()) {
+            throw new IllegalArgumentException("El periodo no está cerrado.");
+        }
+        if (periodoRepo.existsByCerradoTrueAndFechaInicioGreaterThan(p.getFechaFin())) {
+            throw new IllegalArgumentException("Solo se puede reabrir el último periodo cerrado.");
+        }
+        saldoPeriodoRepo.borrarDelPeriodo(p.getId());
+        p.setCerrado(false);
+        return p;
+    }
+
+    /**
+     * Todo lo que esta hasta la fecha fin del ultimo cierre queda congelado, si cambiara los saldos guardados
+     * dejarian de cuadrar. Va dentro de la transaccion del asiento: deja el periodo de la fecha con lock
+     * compartido hasta el commit, asi un cierre no suma mientras entra un asiento en ese periodo.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void validarFechaAbierta(LocalDate fecha) {
+        if (fecha == null) return;
+        periodoRepo.findFirstByFechaFinGreaterThanEqualOrderByFechaFinAsc(fecha); // el lock, antes de mirar los cierres
+        periodoRepo.findFirstByCerradoTrueOrderByFechaFinDesc().ifPresent(ultimo -> {
+            if (!fecha.isAfter(ultimo.getFechaFin())) {
+                throw new IllegalArgumentException("La fecha " + fecha + " pertenece a un periodo cerrado (" + ultimo.getNombre() + ").");
+            }
+        });
+    }
+}
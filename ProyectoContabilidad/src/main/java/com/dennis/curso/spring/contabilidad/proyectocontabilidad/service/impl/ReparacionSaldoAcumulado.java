@@ -0,0 +1,33 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.LibroCambiado;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Recalcula el saldo acumulado de las partidas justo antes del commit, cuando ya estan escritas todas las del
+ * asiento (al eliminar, el borrado llega despues de ajustar). ajustar dejo bloqueada la fila de saldos de cada
+ * cuenta a reparar, exista o no de antes, asi dos asientos de la misma cuenta no recalculan a la vez: el
+ * segundo espera al commit del primero y ve sus partidas.
+ */
+@Component
+class ReparacionSaldoAcumulado {
+
+    private final MovimientoJdbcRepository movimientoRepo;
+    private final EntityManager em;
+
+    ReparacionSaldoAcumulado(MovimientoJdbcRepository movimientoRepo, EntityManager em) {
+        this.movimientoRepo = movimientoRepo;
+        this.em = em;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    void libroCambiado(LibroCambiado cambio) {
+        if (cambio.reparar().isEmpty()) return;
+        em.flush();
+        cambio.reparar().forEach(movimientoRepo::repararSaldos);
+    }
+}
@@ -1,121 +1,181 @@
 package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
 
-import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
-import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Partida;
-import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.AsientoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.JerarquiaCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AcumuladorCentavos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.BalanceComprobacion;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.BalanceGeneral;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoResultados;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.ResumenReportes;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
 import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.ReportesService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
+@Timed("contabilidad.reportes")
 public class ReportesServiceImpl implements ReportesService {
 
-    private final AsientoRepository asientoRepo;
+    private static final int MAXIMO_EN_CACHE = 64; // rangos distintos guardados a la vez
 
-    public ReportesServiceImpl(AsientoRepository asientoRepo) {
-        this.asientoRepo = asientoRepo;
+    private final SaldoCuentaService saldoService;
+    private final CatalogoCuentas catalogo;
+    private final VersionLibro version;
+    //reportes ya calculados por rango, valen mientras no cambie la version del libro
+    private final Map<RangoFechas, Guardado> cache = new ConcurrentHashMap<>();
+
+    public ReportesServiceImpl(SaldoCuentaService saldoService, CatalogoCuentas catalogo, VersionLibro version) {
+        this.saldoService = saldoService;
+        this.catalogo = catalogo;
+        this.version = version;
     }
 
-    /** Construye un mapa cuentaId -> {nombre, debe, haber, saldo} (saldo = Σ(debe) - Σ(haber)) */
-    private Map<String, Map<String, Object>> mayorizar() {
-        Map<String, Map<String, Object>> mayor = new LinkedHashMap<>();
-        List<Asiento> asientos = asientoRepo.findAll();
-
-        for (Asiento a : asientos) {
-            if (a.getPartidas() == null) continue;
-            for (Partida p : a.getPartidas()) {
-                if (p.getCuenta() == null || p.getCuenta().getId() == null) continue;
-
-                String id = p.getCuenta().getId();
-                String nombre = Optional.ofNullable(p.getCuenta().getNombre()).orElse(id);
-
-                Map<String, Object> fila = mayor.computeIfAbsent(id, k -> {
-                    Map<String, Object> m = new LinkedHashMap<>();
-                    m.put("cuentaId", id);
-                    m.put("nombre", nombre);
-                    m.put("debe", BigDecimal.ZERO);
-                    m.put("haber", BigDecimal.ZERO);
-                    m.put("saldo", BigDecimal.ZERO);
-                    return m;
-                });
-
-                BigDecimal d = Optional.ofNullable(p.getDebe()).orElse(BigDecimal.ZERO);
-                BigDecimal h = Optional.ofNullable(p.getHaber()).orElse(BigDecimal.ZERO);
-
-                fila.put("debe",  ((BigDecimal) fila.get("debe")).add(d));
-                fila.put("haber", ((BigDecimal) fila.get("haber")).add(h));
-                fila.put("saldo", ((BigDecimal) fila.get("saldo")).add(d.subtract(h)));
-            }
+    private record Guardado(long version, ResumenReportes resumen) {
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BalanceComprobacion balanceComprobacion(RangoFechas rango) {
+        return resumen(rango).balanceComprobacion();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EstadoResultados estadoResultados(RangoFechas rango) {
+        return resumen(rango).estadoResultados();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BalanceGeneral balanceGeneral(RangoFechas rango) {
+        return resumen(rango).balanceGeneral();
+    }
+
+    /**
+     * Devuelve los reportes guardados si se calcularon con la version actual del libro;
+     * si no, mayoriza una vez y arma los tres. La version se lee antes de consultar,
+     * asi un cambio que confirme mientras se calcula deja la entrada vieja y se recalcula en la siguiente.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ResumenReportes resumen(RangoFechas rango) {
+        long v = version.actual();
+        Guardado guardado = cache.get(rango);
+        if (guardado != null && guardado.version() == v) return guardado.resumen();
+
+        List<TotalCuenta> hojas = hojas(mayorizar(rango)); // <-- solo hojas
+        EstadoResultados er = estadoResultados(hojas);
+        ResumenReportes nuevo = new ResumenReportes(balanceComprobacion(hojas), er, balanceGeneral(hojas, er.utilidad()));
+
+        if (cache.size() >= MAXIMO_EN_CACHE) cache.clear(); // pocos rangos se repiten, no vale la pena un LRU
+        cache.put(rango, new Guardado(v, nuevo));
+        return nuevo;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResumenReportes resumen(RangoFechas saldos, RangoFechas resultados) {
+        ResumenReportes r = resumen(saldos);
+        if (resultados.equals(saldos)) return r;
+        return new ResumenReportes(r.balanceComprobacion(), resumen(resultados).estadoResultados(), r.balanceGeneral());
+    }
+
+    /**
+     * Totales por cuenta con saldo = Σ(debe) - Σ(haber).
+     * Llegan ya sumados por la BD, ver SaldoCuentaService.totales.
+     */
+    private List<TotalCuenta> mayorizar(RangoFechas rango) {
+        List<TotalCuenta> totales = saldoService.totales(rango);
+        List<TotalCuenta> mayor = new ArrayList<>(totales.size());
+        for (TotalCuenta t : totales) {
+            mayor.add(t.nombre() != null ? t : new TotalCuenta(t.cuentaId(), t.cuentaId(), t.debe(), t.haber()));
         }
         return mayor;
     }
 
-    /** Detecta cuentas padre: un id es padre si es prefijo de otro id distinto */
-    private static Set<String> detectarPadres(Set<String> ids) {
+    /**
+     * Quita las cuentas padre: un id con movimientos es padre si otra cuenta con movimientos cuelga de el.
+     * Sube por el arbol de prefijos del catalogo desde cada cuenta (largo del id) en vez de comparar todas contra todas.
+     */
+    private List<TotalCuenta> hojas(List<TotalCuenta> mayor) {
+        JerarquiaCuentas jerarquia = catalogo.jerarquia();
+        Set<String> ids = new HashSet<>();
+        for (TotalCuenta t : mayor) ids.add(t.cuentaId());
+
         Set<String> padres = new HashSet<>();
-        List<String> lista = new ArrayList<>(ids);
-        for (int i = 0; i < lista.size(); i++) {
-            String a = lista.get(i);
-            for (int j = 0; j < lista.size(); j++) {
-                if (i == j) continue;
-                String b = lista.get(j);
-                if (b.startsWith(a) && !b.equals(a)) {
-                    padres.add(a);
-                    break;
-                }
+        for (String id : ids) {
+            for (String ancestro : jerarquia.ancestros(id)) {
+                if (ids.contains(ancestro)) padres.add(ancestro);
             }
         }
-        return padres;
+
+        List<TotalCuenta> hojas = new ArrayList<>(mayor.size() - padres.size());
+        for (TotalCuenta t : mayor) {
+            if (!padres.contains(t.cuentaId())) hojas.add(t); // omite padres
+        }
+        return hojas;
     }
 
     private static boolean startsWith(String cuentaId, String prefijo) {
         return cuentaId != null && cuentaId.startsWith(prefijo);
     }
 
-    @Override
-    @Transactional(readOnly = true)
-    public Map<String, Object> balanceComprobacion() {
-        Map<String, Map<String, Object>> mayor = mayorizar();
-        Set<String> padres = detectarPadres(mayor.keySet()); // <-- solo hojas
-
-        BigDecimal totalDebe = BigDecimal.ZERO;
-        BigDecimal totalHaber = BigDecimal.ZERO;
+    private BalanceComprobacion balanceComprobacion(List<TotalCuenta> hojas) {
+        AcumuladorCentavos totalDebe = new AcumuladorCentavos();
+        AcumuladorCentavos totalHaber = new AcumuladorCentavos();
 
-        List<Map<String, Object>> filas = new ArrayList<>();
-        for (Map<String, Object> cta : mayor.values()) {
-            String id = (String) cta.get("cuentaId");
-            if (padres.contains(id)) continue; // omite padres
-
-            String nombre = (String) cta.get("nombre");
-            BigDecimal saldo = (BigDecimal) cta.get("saldo");
+        List<BalanceComprobacion.Fila> filas = new ArrayList<>(hojas.size());
+        for (TotalCuenta cta : hojas) {
+            BigDecimal saldo = cta.saldo();
 
             BigDecimal debe  = saldo.compareTo(BigDecimal.ZERO) >= 0 ? saldo : BigDecimal.ZERO;
             BigDecimal haber = saldo.compareTo(BigDecimal.ZERO) <  0 ? saldo.abs() : BigDecimal.ZERO;
 
-            totalDebe  = totalDebe.add(debe);
-            totalHaber = totalHaber.add(haber);
+            totalDebe.sumar(debe);
+            totalHaber.sumar(haber);
 
-            Map<String, Object> fila = new LinkedHashMap<>();
-            fila.put("cuentaId", id);
-            fila.put("nombre", nombre);
-            fila.put("debe", debe);
-            fila.put("haber", haber);
-            filas.add(fila);
+            filas.add(new BalanceComprobacion.Fila(cta.cuentaId(), cta.nombre(), debe, haber));
         }
 
         // Orden estable por cuentaId (legibilidad)
-        filas.sort(Comparator.comparing(m -> (String) m.get("cuentaId")));
+        filas.sort(Comparator.comparing(BalanceComprobacion.Fila::cuentaId));
+
+        return new BalanceComprobacion(List.copyOf(filas), subtotales(filas), totalDebe.valor(), totalHaber.valor());
+    }
+
+    /** Subtotal de cada cuenta padre del catalogo: suma de las filas hoja que cuelgan de ella */
+    private List<BalanceComprobacion.Fila> subtotales(List<BalanceComprobacion.Fila> filas) {
+        JerarquiaCuentas jerarquia = catalogo.jerarquia();
+        Map<String, Suma> acumulado = new TreeMap<>();
+        for (BalanceComprobacion.Fila fila : filas) {
+            for (String padre : jerarquia.ancestros(fila.cuentaId())) {
+                Suma suma = acumulado.computeIfAbsent(padre, k -> new Suma());
+                suma.debe.sumar(fila.debe());
+                suma.haber.sumar(fila.haber());
+            }
+        }
 
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("filas", filas);
-        out.put("totalDebe", totalDebe);
-        out.put("totalHaber", totalHaber);
-        return out;
+        List<BalanceComprobacion.Fila> out = new ArrayList<>(acumulado.size());
+        acumulado.forEach((id, suma) -> out.add(new BalanceComprobacion.Fila(id,
+                catalogo.buscar(id).map(CatalogoCuentas.CuentaInfo::nombre).orElse(id), suma.debe.valor(), suma.haber.valor())));
+        return List.copyOf(out);
     }
+
+    /** Acumulador mutable de una cuenta padre, se descarta al armar la fila */
+    private static final class Suma {
+        private final AcumuladorCentavos debe = new AcumuladorCentavos();
+        private final AcumuladorCentavos haber = new AcumuladorCentavos();
+    }
+
     private static boolean esActivoCorriente(String id) {
         return id != null && id.startsWith("11"); // AJUSTA según tu catálogo
     }
@@ -132,68 +192,49 @@ public class ReportesServiceImpl implements ReportesService {
         return id != null && id.startsWith("22"); // AJUSTA
     }
 
-    @Override
-    @Transactional(readOnly = true)
-    public Map<String, Object> estadoResultados() {
-        Map<String, Map<String, Object>> mayor = mayorizar();
-        Set<String> padres = detectarPadres(mayor.keySet()); // <-- solo hojas
-
-        BigDecimal ingresos = BigDecimal.ZERO;     // grupo 5 (naturaleza acreedora)
-        BigDecimal costosGastos = BigDecimal.ZERO; // grupo 4 (sumar con signo)
+    private static EstadoResultados estadoResultados(List<TotalCuenta> hojas) {
+        AcumuladorCentavos ingresos = new AcumuladorCentavos();     // grupo 5 (naturaleza acreedora)
+        AcumuladorCentavos costosGastos = new AcumuladorCentavos(); // grupo 4 (sumar con signo)
 
-        for (Map<String, Object> cta : mayor.values()) {
-            String id = (String) cta.get("cuentaId");
-            if (padres.contains(id)) continue; // omite padres
-
-            BigDecimal saldo = (BigDecimal) cta.get("saldo");
+        for (TotalCuenta cta : hojas) {
+            String id = cta.cuentaId();
+            BigDecimal saldo = cta.saldo();
 
             if (startsWith(id, "5")) {
                 // ingresos: aportan cuando el saldo es negativo (crédito)
                 BigDecimal aporte = saldo.compareTo(BigDecimal.ZERO) < 0 ? saldo.abs() : BigDecimal.ZERO;
-                ingresos = ingresos.add(aporte);
+                ingresos.sumar(aporte);
             } else if (startsWith(id, "4")) {
                 // costos/gastos periódicos (compras, ajustes A/B/C, rebajas negativas, gastos positivos)
-                costosGastos = costosGastos.add(saldo); // con su signo
+                costosGastos.sumar(saldo); // con su signo
             }
         }
 
-        BigDecimal utilidad = ingresos.subtract(costosGastos);
-
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("ingresos", ingresos);
-        out.put("costosGastos", costosGastos);
-        out.put("utilidad", utilidad);
-        return out;
+        BigDecimal utilidad = ingresos.valor().subtract(costosGastos.valor());
+        return new EstadoResultados(ingresos.valor(), costosGastos.valor(), utilidad);
     }
 
-    @Override
-    @Transactional(readOnly = true)
-    public Map<String, Object> balanceGeneral() {
-        Map<String, Map<String, Object>> mayor = mayorizar();
-        Set<String> padres = detectarPadres(mayor.keySet()); // <-- solo hojas
-
+    private static BalanceGeneral balanceGeneral(List<TotalCuenta> hojas, BigDecimal utilidad) {
         // Desglose
-        BigDecimal activoCorriente     = BigDecimal.ZERO;
-        BigDecimal activoNoCorriente   = BigDecimal.ZERO;
-        BigDecimal pasivoCorriente     = BigDecimal.ZERO;
-        BigDecimal pasivoNoCorriente   = BigDecimal.ZERO;
-        BigDecimal capitalContable     = BigDecimal.ZERO;
-
-        for (Map<String, Object> cta : mayor.values()) {
-            String id = (String) cta.get("cuentaId");
-            if (padres.contains(id)) continue; // omite padres
+        AcumuladorCentavos activoCorriente   = new AcumuladorCentavos();
+        AcumuladorCentavos activoNoCorriente = new AcumuladorCentavos();
+        AcumuladorCentavos pasivoCorriente   = new AcumuladorCentavos();
+        AcumuladorCentavos pasivoNoCorriente = new AcumuladorCentavos();
+        AcumuladorCentavos capitalContable   = new AcumuladorCentavos();
 
-            BigDecimal saldo = (BigDecimal) cta.get("saldo");
+        for (TotalCuenta cta : hojas) {
+            String id = cta.cuentaId();
+            BigDecimal saldo = cta.saldo();
 
             // ACTIVOS (grupo 1) -> se suman con su signo para netear contra-cuentas
             if (startsWith(id, "1")) {
                 if (esActivoCorriente(id)) {
-                    activoCorriente = activoCorriente.add(saldo);
+                    activoCorriente.sumar(saldo);
                 } else if (esActivoNoCorriente(id)) {
-                    activoNoCorriente = activoNoCorriente.add(saldo);
+                    activoNoCorriente.sumar(saldo);
                 } else {
                     // si no cae en ninguna de las anteriores, podrías decidir a dónde mandarla
-                    activoNoCorriente = activoNoCorriente.add(saldo);
+                    activoNoCorriente.sumar(saldo);
                 }
             }
 
@@ -202,12 +243,12 @@ public class ReportesServiceImpl implements ReportesService {
                 if (saldo.compareTo(BigDecimal.ZERO) < 0) {
                     BigDecimal valor = saldo.abs();
                     if (esPasivoCorriente(id)) {
-                        pasivoCorriente = pasivoCorriente.add(valor);
+                        pasivoCorriente.sumar(valor);
                     } else if (esPasivoNoCorriente(id)) {
-                        pasivoNoCorriente = pasivoNoCorriente.add(valor);
+                        pasivoNoCorriente.sumar(valor);
                     } else {
                         // si no cae en ninguna de las anteriores, mándalo a pasivo no corriente por defecto
-                        pasivoNoCorriente = pasivoNoCorriente.add(valor);
+                        pasivoNoCorriente.sumar(valor);
                     }
                 }
             }
@@ -215,43 +256,27 @@ public class ReportesServiceImpl implements ReportesService {
             // CAPITAL (grupo 3) -> naturaleza acreedora, ABS de saldos negativos
             else if (startsWith(id, "3")) {
                 if (saldo.compareTo(BigDecimal.ZERO) < 0) {
-                    capitalContable = capitalContable.add(saldo.abs());
+                    capitalContable.sumar(saldo.abs());
                 }
             }
         }
 
-        // Utilidad (positiva o negativa) calculada de la misma forma que en ER
-        Map<String, Object> er = estadoResultados();
-        BigDecimal utilidad = (BigDecimal) er.get("utilidad");
+        // La utilidad (positiva o negativa) llega calculada por el ER sobre la misma mayorizacion
 
-        // Totales
-        BigDecimal totalActivos = activoCorriente.add(activoNoCorriente);
-        BigDecimal patrimonioTotal = capitalContable.add(utilidad);
-        BigDecimal totalPasivos = pasivoCorriente.add(pasivoNoCorriente);
+        // Totales; de aqui en adelante son BigDecimal porque salen en la respuesta
+        BigDecimal capital = capitalContable.valor();
+        BigDecimal totalActivos = activoCorriente.valor().add(activoNoCorriente.valor());
+        BigDecimal patrimonioTotal = capital.add(utilidad);
+        BigDecimal totalPasivos = pasivoCorriente.valor().add(pasivoNoCorriente.valor());
         BigDecimal totalPasivosMasPatrimonio = totalPasivos.add(patrimonioTotal);
 
         boolean equilibrioOK =
                 totalActivos.setScale(2, RoundingMode.HALF_UP)
                         .compareTo(totalPasivosMasPatrimonio.setScale(2, RoundingMode.HALF_UP)) == 0;
 
-        Map<String, Object> out = new LinkedHashMap<>();
-
-        // Desglose por grupos
-        out.put("activoCorriente", activoCorriente);
-        out.put("activoNoCorriente", activoNoCorriente);
-        out.put("pasivoCorriente", pasivoCorriente);
-        out.put("pasivoNoCorriente", pasivoNoCorriente);
-        out.put("capitalContable", capitalContable);
-
-        // Totales generales (para compatibilidad y para KPIs)
-        out.put("activos", totalActivos);
-        out.put("pasivos", totalPasivos);
-        out.put("capital", capitalContable); // sin utilidad
-        out.put("utilidad", utilidad);
-        out.put("patrimonioTotal", patrimonioTotal);
-        out.put("totalPasivosMasPatrimonio", totalPasivosMasPatrimonio);
-        out.put("equilibrioOK", equilibrioOK);
-
-        return out;
+        // Desglose por grupos, totales generales (para compatibilidad y para KPIs); capital va sin utilidad
+        return new BalanceGeneral(activoCorriente.valor(), activoNoCorriente.valor(), pasivoCorriente.valor(),
+                pasivoNoCorriente.valor(), capital, totalActivos, totalPasivos, capital, utilidad, patrimonioTotal,
+                totalPasivosMasPatrimonio, equilibrioOK);
     }
 }
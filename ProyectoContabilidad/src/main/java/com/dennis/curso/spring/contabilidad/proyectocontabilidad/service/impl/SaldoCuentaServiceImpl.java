@@ -0,0 +1,202 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.LibroCambiado;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Partida;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Periodo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository.Posicion;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PeriodoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.SaldoCuentaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.SaldoPeriodoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.SaldoCuentaService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+@Service
+public class SaldoCuentaServiceImpl implements SaldoCuentaService {
+
+    private final SaldoCuentaRepository saldoRepo;
+    private final PeriodoRepository periodoRepo;
+    private final SaldoPeriodoRepository saldoPeriodoRepo;
+    private final TotalesPartidas partidas;
+    private final VersionLibro version;
+    private final MovimientoJdbcRepository movimientoRepo;
+    private final ApplicationEventPublisher publisher;
+    private final String fuente;
+
+    public SaldoCuentaServiceImpl(SaldoCuentaRepository saldoRepo,
+                                  PeriodoRepository periodoRepo,
+                                  SaldoPeriodoRepository saldoPeriodoRepo,
+                                  TotalesPartidas partidas,
+                                  VersionLibro version,
+                                  MovimientoJdbcRepository movimientoRepo,
+                                  ApplicationEventPublisher publisher,
+                                  @Value("${app.reportes.fuente:saldos}") String fuente) {
+        this.saldoRepo = saldoRepo;
+        this.periodoRepo = periodoRepo;
+        this.saldoPeriodoRepo = saldoPeriodoRepo;
+        this.partidas = partidas;
+        this.version = version;
+        this.movimientoRepo = movimientoRepo;
+        this.publisher = publisher;
+        this.fuente = fuente;
+    }
+
+    /**
+     * Totales por cuenta ya sumados en la BD:
+     * sin rango -> tabla de saldos ("saldos") o GROUP BY sobre partidas ("agregado");
+     * con desde -> solo los movimientos del rango;
+     * solo hasta -> saldo acumulado a esa fecha usando el ultimo periodo cerrado como punto de partida.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<TotalCuenta> totales(RangoFechas rango) {
+        if (rango.esTodo()) {
+            return "agregado".equalsIgnoreCase(fuente)
+                    ? partidas.sumar(null, null)
+                    : saldoRepo.totalesPorCuenta();
+        }
+        if (rango.desde() != null) {
+            return partidas.sumar(rango.desde(), rango.hasta());
+        }
+        return totalesAl(rango.hasta());
+    }
+
+    /** Saldo del ultimo cierre anterior + solo las partidas posteriores a ese cierre */
+    private List<TotalCuenta> totalesAl(LocalDate hasta) {
+        Optional<Periodo> cierre = periodoRepo.findFirstByCerradoTrueAndFechaFinLessThanEqualOrderByFechaFinDesc(hasta);
+        if (cierre.isEmpty()) {
+            return partidas.sumar(null, hasta);
+        }
+        Periodo p = cierre.get();
+        List<TotalCuenta> base = saldoPeriodoRepo.totalesDelPeriodo(p.getId());
+        if (p.getFechaFin().equals(hasta)) return base;
+
+        List<TotalCuenta> movimientos = partidas.sumar(p.getFechaFin().plusDays(1), hasta);
+        Map<String, TotalCuenta> combinado = new TreeMap<>();
+        for (TotalCuenta t : base) combinado.put(t.cuentaId(), t);
+        for (TotalCuenta t : movimientos) combinado.merge(t.cuentaId(), t, TotalCuenta::sumar);
+        return new ArrayList<>(combinado.values());
+    }
+
+    /**
+     * Agrupa las partidas por cuenta y aplica un solo delta por cuenta en la transaccion del asiento.
+     * Las cuentas van en orden de id: dos asientos con cuentas en comun bloquean sus filas en el mismo orden.
+     * Lo demas que depende del libro (foto, version, saldo acumulado, avisos) escucha el LibroCambiado.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ajustar(Collection<Partida> anteriores, Collection<Partida> nuevas) {
+        Map<String, Delta> deltas = new TreeMap<>();
+        acumular(deltas, anteriores, -1);
+        acumular(deltas, nuevas, 1);
+        Map<String, Posicion> reparar = desdeDondeReparar(anteriores, nuevas);
+
+        List<LibroCambiado.Delta> cambiadas = new ArrayList<>();
+        for (Delta delta : deltas.values()) {
+            boolean cambio = delta.debe.signum() != 0 || delta.haber.signum() != 0;
+            if (!cambio && !reparar.containsKey(delta.cuentaId)) continue; // la cuenta no cambio
+
+            // crea la fila si es el primer movimiento de la cuenta y la deja bloqueada hasta el commit
+            saldoRepo.sumarDelta(delta.cuentaId, delta.debe, delta.haber);
+            if (cambio) cambiadas.add(new LibroCambiado.Delta(delta.cuentaId, delta.debe, delta.haber));
+        }
+        publisher.publishEvent(new LibroCambiado(copia(anteriores), copia(nuevas), reparar, cambiadas));
+    }
+
+    private static List<Partida> copia(Collection<Partida> partidas) {
+        return partidas == null ? List.of() : List.copyOf(partidas);
+    }
+
+    /**
+     * Por cuenta, la primera posicion del mayor que cambia: partidas nuevas, borradas o que cambiaron de
+     * fecha, cuenta o importe (anteriores y nuevas se emparejan por id). Lo anterior a esa posicion no se toca.
+     */
+    private static Map<String, Posicion> desdeDondeReparar(Collection<Partida> anteriores, Collection<Partida> nuevas) {
+        Map<Long, Partida> antes = new HashMap<>();
+        List<Partida> cambiadas = new ArrayList<>();
+        if (anteriores != null) {
+            for (Partida p : anteriores) {
+                if (p.getId() == null) cambiadas.add(p);
+                else antes.put(p.getId(), p);
+            }
+        }
+        if (nuevas != null) {
+            for (Partida p : nuevas) {
+                Partida previa = p.getId() == null ? null : antes.remove(p.getId());
+                if (previa != null && mismoMovimiento(previa, p)) continue;
+                cambiadas.add(p);
+                if (previa != null) cambiadas.add(previa);
+            }
+        }
+        cambiadas.addAll(antes.values());
+
+        Map<String, Posicion> desde = new HashMap<>();
+        for (Partida p : cambiadas) {
+            if (p.getCuenta() == null || p.getCuenta().getId() == null) continue;
+            Posicion pos = new Posicion(p.getFecha(),
+                    p.getAsiento() == null || p.getAsiento().getId() == null ? 0 : p.getAsiento().getId(),
+                    p.getId() == null ? 0 : p.getId());
+            desde.merge(p.getCuenta().getId(), pos, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+        }
+        return desde;
+    }
+
+    private static boolean mismoMovimiento(Partida a, Partida b) {
+        return a.getCuenta().getId().equals(b.getCuenta().getId())
+                && Objects.equals(a.getFecha(), b.getFecha())
+                && importe(a.getDebe()).compareTo(importe(b.getDebe())) == 0
+                && importe(a.getHaber()).compareTo(importe(b.getHaber())) == 0;
+    }
+
+    private static BigDecimal importe(BigDecimal v) {
+        return v == null ? BigDecimal.ZERO : v;
+    }
+
+    @Override
+    @Transactional
+    public int reconstruir() {
+        version.cambio();
+        saldoRepo.deleteAllInBatch();
+        int filas = saldoRepo.insertarDesdePartidas();
+        movimientoRepo.repararSaldos(); // y el saldo acumulado de cada partida
+        return filas;
+    }
+
+    private static void acumular(Map<String, Delta> deltas, Collection<Partida> partidas, int signo) {
+        if (partidas == null) return;
+        for (Partida p : partidas) {
+            if (p.getCuenta() == null || p.getCuenta().getId() == null) continue;
+
+            Delta delta = deltas.computeIfAbsent(p.getCuenta().getId(), Delta::new);
+            BigDecimal d = Optional.ofNullable(p.getDebe()).orElse(BigDecimal.ZERO);
+            BigDecimal h = Optional.ofNullable(p.getHaber()).orElse(BigDecimal.ZERO);
+            if (signo < 0) {
+                d = d.negate();
+                h = h.negate();
+            }
+            delta.debe = delta.debe.add(d);
+            delta.haber = delta.haber.add(h);
+        }
+    }
+
+    private static final class Delta {
+        private final String cuentaId;
+        private BigDecimal debe = BigDecimal.ZERO;
+        private BigDecimal haber = BigDecimal.ZERO;
+
+        private Delta(String cuentaId) {
+            this.cuentaId = cuentaId;
+        }
+    }
+}
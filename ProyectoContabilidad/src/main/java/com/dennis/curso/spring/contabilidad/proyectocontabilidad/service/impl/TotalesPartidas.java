@@ -0,0 +1,37 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.InstantaneaLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PartidaRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/** Totales por cuenta sumando partidas: de la foto del libro si la hay, si no GROUP BY, en paralelo si el libro pasa el umbral */
+@Component
+class TotalesPartidas {
+
+    private final InstantaneaLibro instantanea;
+    private final MayorizacionParalela paralela;
+    private final PartidaRepository partidaRepo;
+
+    TotalesPartidas(InstantaneaLibro instantanea, MayorizacionParalela paralela, PartidaRepository partidaRepo) {
+        this.instantanea = instantanea;
+        this.paralela = paralela;
+        this.partidaRepo = partidaRepo;
+    }
+
+    List<TotalCuenta> sumar(LocalDate desde, LocalDate hasta) {
+        Optional<List<TotalCuenta>> foto = instantanea.totales(desde, hasta);
+        if (foto.isPresent()) return foto.get();
+        if (paralela.conviene()) {
+            Optional<List<TotalCuenta>> enParalelo = paralela.totales(desde, hasta);
+            if (enParalelo.isPresent()) return enParalelo.get(); // si no, el libro cambio mientras se sumaba
+        }
+        return desde == null && hasta == null
+                ? partidaRepo.totalesPorCuenta()
+                : partidaRepo.totalesPorCuentaEntre(desde, hasta);
+    }
+}
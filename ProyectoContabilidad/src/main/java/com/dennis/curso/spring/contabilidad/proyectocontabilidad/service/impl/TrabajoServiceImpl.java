@@ -0,0 +1,226 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.config.Hilos;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.EstadoTrabajo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.RangoFechas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.MayorService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.ReportesService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.TrabajoService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Reportes largos en segundo plano: un pool fijo con cola acotada (si se llena responde 503),
+ * un trabajo igual a otro que sigue en curso devuelve el mismo id, y los resultados se guardan
+ * un tiempo limitado. El mayor se escribe a un archivo temporal para no tenerlo en memoria.
+ */
+@Service
+public class TrabajoServiceImpl implements TrabajoService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrabajoServiceImpl.class);
+
+    private final ReportesService reportesService;
+    private final MayorService mayorService;
+    private final MovimientoJdbcRepository movimientoRepo;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService limpieza;
+    private final Duration retencion;
+    private final Duration intervaloLimpieza;
+
+    private final Map<String, Trabajo> trabajos = new ConcurrentHashMap<>(); // por id
+    private final Map<String, Trabajo> enCurso = new ConcurrentHashMap<>();  // por clave tipo+rango
+
+    public TrabajoServiceImpl(ReportesService reportesService, MayorService mayorService,
+                              MovimientoJdbcRepository movimientoRepo, ObjectMapper objectMapper,
+                              @Value("${app.trabajos.hilos:2}") int hilos,
+                              @Value("${app.trabajos.cola:20}") int cola,
+                              @Value("${app.trabajos.retencion:PT1H}") Duration retencion,
+                              @Value("${app.trabajos.limpieza:PT5M}") Duration intervaloLimpieza) {
+        this.reportesService = reportesService;
+        this.mayorService = mayorService;
+        this.movimientoRepo = movimientoRepo;
+        this.objectMapper = objectMapper;
+        this.retencion = retencion;
+        this.intervaloLimpieza = intervaloLimpieza;
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cola), Hilos.daemon("trabajo"), new ThreadPoolExecutor.AbortPolicy());
+        this.limpieza = Executors.newSingleThreadScheduledExecutor(Hilos.daemon("trabajos-limpieza"));
+    }
+
+    /** Sin pedidos nuevos los resultados vencidos y sus archivos tambien se van */
+    @EventListener(ApplicationReadyEvent.class)
+    void iniciar() {
+        limpieza.scheduleWithFixedDelay(this::limpiar, intervaloLimpieza.toMillis(), intervaloLimpieza.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Trabajo {
+        private final String id = UUID.randomUUID().toString();
+        private final String tipo;
+        private final String clave;
+        private final RangoFechas rango;
+        private final Instant creado = Instant.now();
+        private volatile EstadoTrabajo.Estado estado = EstadoTrabajo.Estado.PENDIENTE;
+        private volatile long total = -1; // -1 = no se sabe
+        private volatile long hechos;
+        private volatile Instant terminado;
+        private volatile String error;
+        private volatile Object valor;   // reportes: el record ya calculado
+        private volatile Path archivo;   // mayor: JSON en disco
+
+        private Trabajo(String tipo, RangoFechas rango) {
+            this.tipo = tipo;
+            this.rango = rango;
+            this.clave = tipo + "|" + rango.desde() + "|" + rango.hasta();
+        }
+
+        private EstadoTrabajo estado() {
+            Double progreso = switch (estado) {
+                case TERMINADO -> 1.0;
+                case PENDIENTE -> 0.0;
+                default -> total > 0 ? Math.min(1.0, (double) hechos / total) : (total == 0 ? 1.0 : null);
+            };
+            String resultado = estado == EstadoTrabajo.Estado.TERMINADO ? "/api/trabajos/" + id + "/resultado" : null;
+            return new EstadoTrabajo(id, tipo, rango, estado, progreso, creado, terminado, error, resultado);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Tarea {
+        void correr(Trabajo t) throws IOException;
+    }
+
+    @Override
+    public EstadoTrabajo enviarReporte(String tipo, RangoFechas saldos, RangoFechas resultados) {
+        Tarea tarea = switch (tipo) {
+            case "balance-comprobacion" -> t -> t.valor = reportesService.balanceComprobacion(t.rango);
+            case "estado-resultados" -> t -> t.valor = reportesService.estadoResultados(t.rango);
+            case "balance-general" -> t -> t.valor = reportesService.balanceGeneral(t.rango);
+            case "resumen" -> t -> t.valor = reportesService.resumen(t.rango, resultados);
+            default -> throw new IllegalArgumentException("Tipo de reporte no soportado: " + tipo);
+        };
+        return enviar(new Trabajo(tipo, "estado-resultados".equals(tipo) ? resultados : saldos), tarea);
+    }
+
+    @Override
+    public EstadoTrabajo enviarMayor(RangoFechas rango) {
+        return enviar(new Trabajo("mayor", rango), t -> {
+            t.total = movimientoRepo.contarMovimientos(t.rango.desde(), t.rango.hasta());
+            Path archivo = Files.createTempFile("mayor-" + t.id, ".json");
+            t.archivo = archivo; // se asigna antes de escribir para que la limpieza lo borre aunque falle
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(archivo), 64 * 1024)) {
+                mayorService.escribirMayor(t.rango.desde(), t.rango.hasta(), out, n -> t.hechos = n);
+            }
+        });
+    }
+
+    @Override
+    public EstadoTrabajo estado(String id) {
+        return buscar(id).estado();
+    }
+
+    @Override
+    public void escribirResultado(String id, OutputStream out) {
+        Trabajo t = buscar(id);
+        if (t.estado != EstadoTrabajo.Estado.TERMINADO) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "El trabajo " + id + " está " + t.estado + ".");
+        }
+        try {
+            if (t.archivo != null) {
+                Files.copy(t.archivo, out);
+            } else {
+                objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, t.valor);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Trabajo buscar(String id) {
+        Trabajo t = trabajos.get(id);
+        if (t == null) {
+            throw new IllegalArgumentException("Trabajo no encontrado: " + id);
+        }
+        return t;
+    }
+
+    private EstadoTrabajo enviar(Trabajo nuevo, Tarea tarea) {
+        limpiar();
+        Trabajo existente = enCurso.putIfAbsent(nuevo.clave, nuevo);
+        if (existente != null) return existente.estado(); // el mismo reporte ya se esta calculando
+
+        trabajos.put(nuevo.id, nuevo);
+        try {
+            executor.execute(() -> correr(nuevo, tarea));
+        } catch (RejectedExecutionException e) {
+            enCurso.remove(nuevo.clave, nuevo);
+            trabajos.remove(nuevo.id);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Hay demasiados trabajos en cola, intente más tarde.");
+        }
+        return nuevo.estado();
+    }
+
+    private void correr(Trabajo t, Tarea tarea) {
+        t.estado = EstadoTrabajo.Estado.EN_CURSO;
+        try {
+            tarea.correr(t);
+            t.estado = EstadoTrabajo.Estado.TERMINADO;
+        } catch (Exception e) {
+            log.warn("Falló el trabajo {} ({})", t.id, t.tipo, e);
+            t.error = e.getMessage();
+            t.estado = EstadoTrabajo.Estado.FALLIDO;
+        } finally {
+            t.terminado = Instant.now();
+            enCurso.remove(t.clave, t); // desde aqui un pedido igual crea un trabajo nuevo
+        }
+    }
+
+    /** Quita los trabajos terminados hace mas que la retencion y borra sus archivos */
+    private void limpiar() {
+        Instant limite = Instant.now().minus(retencion);
+        trabajos.values().removeIf(t -> {
+            boolean vencido = t.terminado != null && t.terminado.isBefore(limite);
+            if (vencido) borrarArchivo(t);
+            return vencido;
+        });
+    }
+
+    private static void borrarArchivo(Trabajo t) {
+        if (t.archivo == null) return;
+        try {
+            Files.deleteIfExists(t.archivo);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar {}", t.archivo, e);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        limpieza.shutdownNow();
+        executor.shutdownNow();
+        trabajos.values().forEach(TrabajoServiceImpl::borrarArchivo);
+    }
+}
@@ -0,0 +1,190 @@
+-- Esquema inicial (SQL Server). Antes lo creaba Hibernate con ddl-auto=update, por eso cada paso
+-- revisa si el objeto ya existe: en una base nueva crea todo y en una que ya tenia las tablas
+-- (baseline-version=0) solo agrega lo que falta y deja los indices como se definen aca.
+
+-- ===================== tablas =====================
+
+IF OBJECT_ID('dbo.cuentas', 'U') IS NULL
+CREATE TABLE cuentas (
+    id     VARCHAR(20)  NOT NULL CONSTRAINT pk_cuentas PRIMARY KEY,
+    nombre VARCHAR(255) NOT NULL,
+    tipo   VARCHAR(255) NOT NULL,
+    activo BIT          NOT NULL
+);
+GO
+
+IF OBJECT_ID('dbo.asientos', 'U') IS NULL
+CREATE TABLE asientos (
+    id          BIGINT       NOT NULL CONSTRAINT pk_asientos PRIMARY KEY,
+    fecha       DATE         NULL,
+    descripcion VARCHAR(500) NULL,
+    version     BIGINT       NOT NULL CONSTRAINT df_asientos_version DEFAULT 0
+);
+GO
+
+-- bases creadas antes del bloqueo optimista: las filas que ya estan quedan en version 0
+IF COL_LENGTH('dbo.asientos', 'version') IS NULL
+ALTER TABLE asientos ADD version BIGINT NOT NULL CONSTRAINT df_asientos_version DEFAULT 0;
+GO
+
+IF OBJECT_ID('dbo.partidas', 'U') IS NULL
+CREATE TABLE partidas (
+    id         BIGINT        NOT NULL CONSTRAINT pk_partidas PRIMARY KEY,
+    asiento_id BIGINT        NOT NULL CONSTRAINT fk_partidas_asiento REFERENCES asientos (id),
+    cuenta_id  VARCHAR(20)   NOT NULL CONSTRAINT fk_partidas_cuenta REFERENCES cuentas (id),
+    debe       NUMERIC(18,2) NULL,
+    haber      NUMERIC(18,2) NULL
+);
+GO
+
+IF OBJECT_ID('dbo.periodos', 'U') IS NULL
+CREATE TABLE periodos (
+    id           BIGINT       IDENTITY(1,1) NOT NULL CONSTRAINT pk_periodos PRIMARY KEY,
+    nombre       VARCHAR(100) NOT NULL,
+    fecha_inicio DATE         NOT NULL,
+    fecha_fin    DATE         NOT NULL,
+    cerrado      BIT          NOT NULL
+);
+GO
+
+IF OBJECT_ID('dbo.saldos_cuenta', 'U') IS NULL
+CREATE TABLE saldos_cuenta (
+    cuenta_id VARCHAR(20)   NOT NULL CONSTRAINT pk_saldos_cuenta PRIMARY KEY
+                                     CONSTRAINT fk_saldos_cuenta_cuenta REFERENCES cuentas (id),
+    debe      NUMERIC(18,2) NOT NULL,
+    haber     NUMERIC(18,2) NOT NULL,
+    saldo     NUMERIC(18,2) NOT NULL
+);
+GO
+
+IF OBJECT_ID('dbo.saldos_periodo', 'U') IS NULL
+CREATE TABLE saldos_periodo (
+    id         BIGINT        IDENTITY(1,1) NOT NULL CONSTRAINT pk_saldos_periodo PRIMARY KEY,
+    periodo_id BIGINT        NOT NULL CONSTRAINT fk_saldos_periodo_periodo REFERENCES periodos (id),
+    cuenta_id  VARCHAR(20)   NOT NULL CONSTRAINT fk_saldos_periodo_cuenta REFERENCES cuentas (id),
+    debe       NUMERIC(18,2) NOT NULL,
+    haber      NUMERIC(18,2) NOT NULL,
+    CONSTRAINT uk_saldos_periodo_cuenta UNIQUE (periodo_id, cuenta_id)
+);
+GO
+
+-- ===================== ids sin IDENTITY =====================
+-- Hibernate creaba asientos.id y partidas.id como IDENTITY y ahora los ids salen de las secuencias de abajo:
+-- contra una columna IDENTITY el INSERT con id falla. SQL Server no quita IDENTITY con ALTER COLUMN, asi que
+-- la tabla se arma de nuevo con los mismos datos. Antes se sueltan las FK de y hacia estas tablas, y despues
+-- se vuelven a crear la PK, las FK y el default con los nombres de una base nueva. Los indices se
+-- recrean en la seccion de indices.
+
+IF COLUMNPROPERTY(OBJECT_ID('dbo.asientos'), 'id', 'IsIdentity') = 1
+   OR COLUMNPROPERTY(OBJECT_ID('dbo.partidas'), 'id', 'IsIdentity') = 1
+BEGIN
+    DECLARE @sql NVARCHAR(MAX) = N'';
+    SELECT @sql += N'ALTER TABLE ' + QUOTENAME(OBJECT_SCHEMA_NAME(parent_object_id)) + N'.'
+        + QUOTENAME(OBJECT_NAME(parent_object_id)) + N' DROP CONSTRAINT ' + QUOTENAME(name) + N'; '
+    FROM sys.foreign_keys
+    WHERE parent_object_id IN (OBJECT_ID('dbo.asientos'), OBJECT_ID('dbo.partidas'))
+       OR referenced_object_id IN (OBJECT_ID('dbo.asientos'), OBJECT_ID('dbo.partidas'));
+    EXEC sp_executesql @sql;
+END
+GO
+
+IF COLUMNPROPERTY(OBJECT_ID('dbo.asientos'), 'id', 'IsIdentity') = 1
+BEGIN
+    CREATE TABLE asientos_sin_identity (
+        id          BIGINT       NOT NULL,
+        fecha       DATE         NULL,
+        descripcion VARCHAR(500) NULL,
+        version     BIGINT       NOT NULL
+    );
+    INSERT INTO asientos_sin_identity (id, fecha, descripcion, version)
+    SELECT id, fecha, descripcion, version FROM asientos;
+    DROP TABLE asientos;
+    EXEC sp_rename 'dbo.asientos_sin_identity', 'asientos';
+END
+GO
+
+IF COLUMNPROPERTY(OBJECT_ID('dbo.partidas'), 'id', 'IsIdentity') = 1
+BEGIN
+    CREATE TABLE partidas_sin_identity (
+        id         BIGINT        NOT NULL,
+        asiento_id BIGINT        NOT NULL,
+        cuenta_id  VARCHAR(20)   NOT NULL,
+        debe       NUMERIC(18,2) NULL,
+        haber      NUMERIC(18,2) NULL
+    );
+    INSERT INTO partidas_sin_identity (id, asiento_id, cuenta_id, debe, haber)
+    SELECT id, asiento_id, cuenta_id, debe, haber FROM partidas;
+    DROP TABLE partidas;
+    EXEC sp_rename 'dbo.partidas_sin_identity', 'partidas';
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.key_constraints WHERE parent_object_id = OBJECT_ID('dbo.asientos') AND type = 'PK')
+ALTER TABLE asientos ADD CONSTRAINT pk_asientos PRIMARY KEY (id);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.default_constraints
+               WHERE parent_object_id = OBJECT_ID('dbo.asientos') AND COL_NAME(parent_object_id, parent_column_id) = 'version')
+ALTER TABLE asientos ADD CONSTRAINT df_asientos_version DEFAULT 0 FOR version;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.key_constraints WHERE parent_object_id = OBJECT_ID('dbo.partidas') AND type = 'PK')
+ALTER TABLE partidas ADD CONSTRAINT pk_partidas PRIMARY KEY (id);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.foreign_keys
+               WHERE parent_object_id = OBJECT_ID('dbo.partidas') AND referenced_object_id = OBJECT_ID('dbo.asientos'))
+ALTER TABLE partidas ADD CONSTRAINT fk_partidas_asiento FOREIGN KEY (asiento_id) REFERENCES asientos (id);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.foreign_keys
+               WHERE parent_object_id = OBJECT_ID('dbo.partidas') AND referenced_object_id = OBJECT_ID('dbo.cuentas'))
+ALTER TABLE partidas ADD CONSTRAINT fk_partidas_cuenta FOREIGN KEY (cuenta_id) REFERENCES cuentas (id);
+GO
+
+-- ===================== secuencias =====================
+-- pool de 50 ids como el allocationSize de las entidades; si ya hay filas arranca despues del mayor id
+
+IF OBJECT_ID('dbo.asientos_seq', 'SO') IS NULL
+BEGIN
+    DECLARE @sql NVARCHAR(200) = N'CREATE SEQUENCE asientos_seq START WITH '
+        + CAST((SELECT COALESCE(MAX(id), 0) + 1 FROM asientos) AS NVARCHAR(20)) + N' INCREMENT BY 50';
+    EXEC sp_executesql @sql;
+END
+GO
+
+IF OBJECT_ID('dbo.partidas_seq', 'SO') IS NULL
+BEGIN
+    DECLARE @sql NVARCHAR(200) = N'CREATE SEQUENCE partidas_seq START WITH '
+        + CAST((SELECT COALESCE(MAX(id), 0) + 1 FROM partidas) AS NVARCHAR(20)) + N' INCREMENT BY 50';
+    EXEC sp_executesql @sql;
+END
+GO
+
+-- ===================== indices =====================
+
+-- partidas de un asiento: carga del asiento, borrado en cascada y el join de los reportes por fecha
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE object_id = OBJECT_ID('dbo.partidas') AND name = 'ix_partidas_asiento')
+CREATE INDEX ix_partidas_asiento ON partidas (asiento_id);
+GO
+
+-- por cuenta: countByCuenta_Id al borrar una cuenta, el libro mayor y los totales por cuenta.
+-- INCLUDE (debe, haber) cubre el GROUP BY sin ir a la tabla. Si quedo el indice sin INCLUDE
+-- que creaba Hibernate se reemplaza.
+IF EXISTS (SELECT 1 FROM sys.indexes WHERE object_id = OBJECT_ID('dbo.partidas') AND name = 'ix_partidas_cuenta_asiento')
+   AND NOT EXISTS (SELECT 1 FROM sys.index_columns ic
+                   JOIN sys.indexes i ON i.object_id = ic.object_id AND i.index_id = ic.index_id
+                   WHERE i.object_id = OBJECT_ID('dbo.partidas') AND i.name = 'ix_partidas_cuenta_asiento'
+                     AND ic.is_included_column = 1)
+DROP INDEX ix_partidas_cuenta_asiento ON partidas;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE object_id = OBJECT_ID('dbo.partidas') AND name = 'ix_partidas_cuenta_asiento')
+CREATE INDEX ix_partidas_cuenta_asiento ON partidas (cuenta_id, asiento_id) INCLUDE (debe, haber);
+GO
+
+-- filtros por rango de fecha y el orden (fecha, id) del libro diario y la paginacion por cursor
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE object_id = OBJECT_ID('dbo.asientos') AND name = 'ix_asientos_fecha_id')
+CREATE INDEX ix_asientos_fecha_id ON asientos (fecha, id);
+GO
+
@@ -0,0 +1,14 @@
+-- respuestas de los POST con Idempotency-Key, solo se usa con app.idempotencia.persistente=true
+
+CREATE TABLE respuestas_idempotentes (
+    clave         VARCHAR(150) NOT NULL CONSTRAINT pk_respuestas_idempotentes PRIMARY KEY,
+    hash_peticion VARCHAR(64)  NOT NULL,
+    estado        INT          NOT NULL,
+    cuerpo        VARCHAR(MAX) NOT NULL,
+    creada        BIGINT       NOT NULL
+);
+GO
+
+-- limpieza de las vencidas
+CREATE INDEX ix_respuestas_idempotentes_creada ON respuestas_idempotentes (creada);
+GO
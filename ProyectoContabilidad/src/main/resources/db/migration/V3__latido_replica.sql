@@ -0,0 +1,10 @@
+-- latido que escribe la primaria cada app.replica.revision; leyendolo en la replica se mide su atraso
+
+CREATE TABLE latido_replica (
+    id      INT    NOT NULL CONSTRAINT pk_latido_replica PRIMARY KEY,
+    momento BIGINT NOT NULL
+);
+GO
+
+INSERT INTO latido_replica (id, momento) VALUES (1, 0);
+GO
@@ -0,0 +1,36 @@
+-- Mayor por cuenta (GET /api/mayor/{cuentaId}): cada partida guarda la fecha de su asiento y el saldo de su
+-- cuenta despues de ella, en el mismo orden que el libro mayor (fecha, asiento, partida). Una pagina del
+-- mayor de una cuenta es asi un rango del indice por cuenta y fecha, sin sumar desde el principio.
+
+IF COL_LENGTH('dbo.partidas', 'fecha') IS NULL
+ALTER TABLE partidas ADD fecha DATE NULL;
+GO
+
+IF COL_LENGTH('dbo.partidas', 'saldo_acumulado') IS NULL
+ALTER TABLE partidas ADD saldo_acumulado NUMERIC(18,2) NULL;
+GO
+
+UPDATE p SET fecha = a.fecha
+FROM partidas p
+JOIN asientos a ON a.id = p.asiento_id;
+GO
+
+-- lo mismo que MovimientoJdbcRepository.repararSaldos(), para todas las cuentas de una vez
+WITH acumulado AS (
+    SELECT saldo_acumulado,
+           SUM(COALESCE(debe, 0) - COALESCE(haber, 0))
+               OVER (PARTITION BY cuenta_id ORDER BY fecha, asiento_id, id ROWS UNBOUNDED PRECEDING) AS saldo
+    FROM partidas
+)
+UPDATE acumulado SET saldo_acumulado = saldo;
+GO
+
+-- reemplaza a ix_partidas_cuenta_asiento: empieza igual por cuenta_id y cubre lo mismo (countByCuenta_Id,
+-- totales por cuenta), y ademas da el mayor de una cuenta ya ordenado con el saldo en el indice
+IF EXISTS (SELECT 1 FROM sys.indexes WHERE object_id = OBJECT_ID('dbo.partidas') AND name = 'ix_partidas_cuenta_asiento')
+DROP INDEX ix_partidas_cuenta_asiento ON partidas;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE object_id = OBJECT_ID('dbo.partidas') AND name = 'ix_partidas_cuenta_fecha')
+CREATE INDEX ix_partidas_cuenta_fecha ON partidas (cuenta_id, fecha, asiento_id, id) INCLUDE (debe, haber, saldo_acumulado);
+GO
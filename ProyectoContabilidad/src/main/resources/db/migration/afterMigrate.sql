@@ -0,0 +1,31 @@
+-- Callback de Flyway, corre al final de cada migrate. Revisa lo que una base que venia de ddl-auto=update
+-- tiene que tener igual que una nueva y que ddl-auto=validate no mira: ids sin IDENTITY, PK, FK y el
+-- default de la version. Si algo falta corta el arranque en vez de fallar en el primer INSERT.
+
+DECLARE @faltan NVARCHAR(2000) = N'';
+
+IF COLUMNPROPERTY(OBJECT_ID('dbo.asientos'), 'id', 'IsIdentity') <> 0
+    SET @faltan += N' asientos.id sigue siendo IDENTITY;';
+IF COLUMNPROPERTY(OBJECT_ID('dbo.partidas'), 'id', 'IsIdentity') <> 0
+    SET @faltan += N' partidas.id sigue siendo IDENTITY;';
+IF OBJECT_ID('dbo.asientos_seq', 'SO') IS NULL
+    SET @faltan += N' falta la secuencia asientos_seq;';
+IF OBJECT_ID('dbo.partidas_seq', 'SO') IS NULL
+    SET @faltan += N' falta la secuencia partidas_seq;';
+IF NOT EXISTS (SELECT 1 FROM sys.key_constraints WHERE parent_object_id = OBJECT_ID('dbo.asientos') AND type = 'PK')
+    SET @faltan += N' asientos no tiene PK;';
+IF NOT EXISTS (SELECT 1 FROM sys.key_constraints WHERE parent_object_id = OBJECT_ID('dbo.partidas') AND type = 'PK')
+    SET @faltan += N' partidas no tiene PK;';
+IF NOT EXISTS (SELECT 1 FROM sys.foreign_keys
+               WHERE parent_object_id = OBJECT_ID('dbo.partidas') AND referenced_object_id = OBJECT_ID('dbo.asientos'))
+    SET @faltan += N' falta la FK de partidas a asientos;';
+IF NOT EXISTS (SELECT 1 FROM sys.foreign_keys
+               WHERE parent_object_id = OBJECT_ID('dbo.partidas') AND referenced_object_id = OBJECT_ID('dbo.cuentas'))
+    SET @faltan += N' falta la FK de partidas a cuentas;';
+IF NOT EXISTS (SELECT 1 FROM sys.default_constraints
+               WHERE parent_object_id = OBJECT_ID('dbo.asientos') AND COL_NAME(parent_object_id, parent_column_id) = 'version')
+    SET @faltan += N' asientos.version no tiene default;';
+
+IF @faltan <> N''
+    THROW 50000, @faltan, 1;
+GO
@@ -0,0 +1,151 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Una base que venia de ddl-auto=update y una nueva tienen que quedar con el mismo esquema despues de las
+ * migraciones. Necesita un SQL Server donde se puedan crear bases:
+ * -Dprueba.sqlserver.url="jdbc:sqlserver://localhost:1433;encrypt=false;user=sa;password=..."
+ * Sin esa propiedad se saltea.
+ */
+class MigracionesSqlServerTest {
+
+    private static final String URL = System.getProperty("prueba.sqlserver.url");
+
+    // lo que creaba Hibernate con ddl-auto=update antes de las migraciones, con ids IDENTITY
+    private static final String[] ESQUEMA_HIBERNATE = {
+            "CREATE TABLE cuentas (id VARCHAR(20) NOT NULL PRIMARY KEY, nombre VARCHAR(255) NOT NULL, " +
+                    "tipo VARCHAR(255) NOT NULL, activo BIT NOT NULL)",
+            "CREATE TABLE asientos (id BIGINT IDENTITY NOT NULL PRIMARY KEY, fecha DATE NULL, descripcion VARCHAR(500) NULL)",
+            "CREATE TABLE partidas (id BIGINT IDENTITY NOT NULL PRIMARY KEY, asiento_id BIGINT NOT NULL, " +
+                    "cuenta_id VARCHAR(20) NOT NULL, debe NUMERIC(18,2) NULL, haber NUMERIC(18,2) NULL)",
+            "CREATE TABLE periodos (id BIGINT IDENTITY NOT NULL PRIMARY KEY, nombre VARCHAR(100) NOT NULL, " +
+                    "fecha_inicio DATE NOT NULL, fecha_fin DATE NOT NULL, cerrado BIT NOT NULL)",
+            "CREATE TABLE saldos_cuenta (cuenta_id VARCHAR(20) NOT NULL PRIMARY KEY, debe NUMERIC(18,2) NOT NULL, " +
+                    "haber NUMERIC(18,2) NOT NULL, saldo NUMERIC(18,2) NOT NULL)",
+            "CREATE TABLE saldos_periodo (id BIGINT IDENTITY NOT NULL PRIMARY KEY, periodo_id BIGINT NOT NULL, " +
+                    "cuenta_id VARCHAR(20) NOT NULL, debe NUMERIC(18,2) NOT NULL, haber NUMERIC(18,2) NOT NULL, " +
+                    "CONSTRAINT uk_saldos_periodo_cuenta UNIQUE (periodo_id, cuenta_id))",
+            "ALTER TABLE partidas ADD CONSTRAINT FK6k1m3r0asiento FOREIGN KEY (asiento_id) REFERENCES asientos",
+            "ALTER TABLE partidas ADD CONSTRAINT FK9q2w7e0cuenta FOREIGN KEY (cuenta_id) REFERENCES cuentas",
+            "ALTER TABLE saldos_cuenta ADD CONSTRAINT FK4t5y6u0cuenta FOREIGN KEY (cuenta_id) REFERENCES cuentas",
+            "ALTER TABLE saldos_periodo ADD CONSTRAINT FK1a2s3d0periodo FOREIGN KEY (periodo_id) REFERENCES periodos",
+            "ALTER TABLE saldos_periodo ADD CONSTRAINT FK7h8j9k0cuenta FOREIGN KEY (cuenta_id) REFERENCES cuentas",
+            "CREATE INDEX ix_asientos_fecha_id ON asientos (fecha, id)",
+            "CREATE INDEX ix_partidas_asiento ON partidas (asiento_id)",
+            "CREATE INDEX ix_partidas_cuenta_asiento ON partidas (cuenta_id, asiento_id)",
+    };
+
+    // columnas, PK, FK, indices y secuencias; los nombres de las restricciones no, Hibernate ponia otros
+    private static final String[] DESCRIPCION = {
+            "SELECT t.name + '.' + c.name + ' ' + ty.name + '(' + CAST(c.max_length AS VARCHAR) + ',' " +
+                    "+ CAST(c.precision AS VARCHAR) + ',' + CAST(c.scale AS VARCHAR) + ')' " +
+                    "+ CASE WHEN c.is_nullable = 1 THEN ' null' ELSE ' not null' END " +
+                    "+ CASE WHEN c.is_identity = 1 THEN ' identity' ELSE '' END " +
+                    "+ CASE WHEN c.default_object_id <> 0 THEN ' default' ELSE '' END " +
+                    "FROM sys.tables t JOIN sys.columns c ON c.object_id = t.object_id " +
+                    "JOIN sys.types ty ON ty.user_type_id = c.user_type_id",
+            "SELECT 'pk ' + t.name + '(' + c.name + ')' FROM sys.key_constraints k " +
+                    "JOIN sys.tables t ON t.object_id = k.parent_object_id " +
+                    "JOIN sys.index_columns ic ON ic.object_id = k.parent_object_id AND ic.index_id = k.unique_index_id " +
+                    "JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id WHERE k.type = 'PK'",
+            "SELECT 'fk ' + OBJECT_NAME(fkc.parent_object_id) + '.' + COL_NAME(fkc.parent_object_id, fkc.parent_column_id) " +
+                    "+ ' -> ' + OBJECT_NAME(fkc.referenced_object_id) + '.' " +
+                    "+ COL_NAME(fkc.referenced_object_id, fkc.referenced_column_id) FROM sys.foreign_key_columns fkc",
+            "SELECT 'ix ' + t.name + '.' + i.name + ' ' + c.name + ' ' + CAST(ic.key_ordinal AS VARCHAR) " +
+                    "+ CASE WHEN ic.is_included_column = 1 THEN ' include' ELSE '' END FROM sys.indexes i " +
+                    "JOIN sys.tables t ON t.object_id = i.object_id " +
+                    "JOIN sys.index_columns ic ON ic.object_id = i.object_id AND ic.index_id = i.index_id " +
+                    "JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id " +
+                    "WHERE i.is_primary_key = 0 AND i.is_unique_constraint = 0 AND i.name IS NOT NULL",
+            "SELECT 'seq ' + name + ' ' + CAST(increment AS VARCHAR) FROM sys.sequences",
+    };
+
+    private final List<String> bases = new ArrayList<>();
+    private JdbcTemplate servidor;
+
+    @BeforeEach
+    void preparar() {
+        assumeTrue(URL != null && !URL.isBlank(), "sin -Dprueba.sqlserver.url");
+        servidor = new JdbcTemplate(new DriverManagerDataSource(URL));
+    }
+
+    @AfterEach
+    void limpiar() {
+        for (String base : bases) {
+            servidor.execute("ALTER DATABASE " + base + " SET SINGLE_USER WITH ROLLBACK IMMEDIATE");
+            servidor.execute("DROP DATABASE " + base);
+        }
+    }
+
+    private DataSource base(String prefijo) {
+        String nombre = prefijo + "_" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        servidor.execute("CREATE DATABASE " + nombre);
+        bases.add(nombre);
+        return new DriverManagerDataSource(URL + ";databaseName=" + nombre);
+    }
+
+    /** La misma configuracion que spring.flyway.* en application.properties */
+    private static void migrar(DataSource ds) {
+        Flyway.configure()
+                .dataSource(ds)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+
+    private static List<String> esquema(DataSource ds) {
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        List<String> lineas = new ArrayList<>();
+        for (String sql : DESCRIPCION) lineas.addAll(jdbc.queryForList(sql, String.class));
+        lineas.removeIf(l -> l.contains("flyway_schema_history"));
+        lineas.sort(null);
+        return lineas;
+    }
+
+    @Test
+    void baseDeHibernateQuedaIgualQueUnaNueva() {
+        DataSource nueva = base("conta_nueva");
+        migrar(nueva);
+
+        DataSource vieja = base("conta_vieja");
+        JdbcTemplate jdbc = new JdbcTemplate(vieja);
+        for (String sql : ESQUEMA_HIBERNATE) jdbc.execute(sql);
+        jdbc.update("INSERT INTO cuentas (id, nombre, tipo, activo) VALUES ('1101', 'Caja', 'Activo', 1), " +
+                "('4101', 'Ventas', 'Ingreso', 1)");
+        jdbc.update("INSERT INTO asientos (fecha, descripcion) VALUES ('2025-01-05', 'Venta'), ('2025-01-02', 'Cobro')");
+        jdbc.update("INSERT INTO partidas (asiento_id, cuenta_id, debe, haber) VALUES " +
+                "(1, '1101', 100, 0), (1, '4101', 0, 100), (2, '1101', 40, 0), (2, '4101', 0, 40)");
+        migrar(vieja);
+
+        assertThat(esquema(vieja)).isEqualTo(esquema(nueva));
+
+        // los datos siguen y el saldo acumulado ya tiene el orden del mayor (el asiento 2 es anterior)
+        assertThat(jdbc.queryForList("SELECT saldo_acumulado FROM partidas WHERE cuenta_id = '1101' " +
+                "ORDER BY fecha, asiento_id, id", BigDecimal.class))
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("40"), new BigDecimal("140"));
+        // los ids de las secuencias entran con INSERT explicito y no chocan con los que habia
+        long asiento = jdbc.queryForObject("SELECT NEXT VALUE FOR asientos_seq", Long.class);
+        assertThat(asiento).isGreaterThan(2);
+        jdbc.update("INSERT INTO asientos (id, fecha, descripcion) VALUES (?, '2025-01-10', 'Nuevo')", asiento);
+        jdbc.update("INSERT INTO partidas (id, asiento_id, cuenta_id, debe, haber) " +
+                "VALUES (NEXT VALUE FOR partidas_seq, ?, '1101', 10, 0)", asiento);
+    }
+}
@@ -0,0 +1,188 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Asiento;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PartidaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.CuentaService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Foto del libro mas el delta contra el GROUP BY sobre partidas, despues de asientos, ediciones y borrados */
+@SpringBootTest(properties = {
+        "app.instantanea.habilitada=true",
+        "app.instantanea.intervalo=PT1H" // las fotos las pide el test
+})
+@ActiveProfiles("prueba")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class InstantaneaLibroTest {
+
+    private static final LocalDate INICIO = LocalDate.of(2025, 1, 1);
+    private static final List<String> CUENTAS = List.of("1101", "1102", "2101", "4101", "5101");
+
+    @Autowired
+    private InstantaneaLibro instantanea;
+    @Autowired
+    private AsientoService asientos;
+    @Autowired
+    private CuentaService cuentas;
+    @Autowired
+    private PartidaRepository partidaRepo;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final SplittableRandom rnd = new SplittableRandom(18);
+
+    @DynamicPropertySource
+    static void archivo(DynamicPropertyRegistry registro) throws IOException {
+        registro.add("app.instantanea.archivo", () -> {
+            try {
+                return Files.createTempDirectory("instantanea").resolve("libro.col").toString();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @BeforeAll
+    void cargarLibro() {
+        CUENTAS.forEach(this::cuenta);
+        for (int i = 0; i < 200; i++) asientos.crear(asiento(CUENTAS));
+    }
+
+    private void cuenta(String id) {
+        if (cuentas.exists(id)) return;
+        Cuenta c = new Cuenta();
+        c.setId(id);
+        c.setNombre("Cuenta " + id);
+        c.setTipo("Activo");
+        cuentas.save(c);
+    }
+
+    private synchronized AsientoRequest asiento(List<String> disponibles) {
+        AsientoRequest req = new AsientoRequest();
+        req.fecha = INICIO.plusDays(rnd.nextInt(60));
+        req.descripcion = "Asiento";
+        req.partidas = new ArrayList<>();
+        long total = 0;
+        for (int p = 0; p < 1 + rnd.nextInt(3); p++) {
+            AsientoRequest.PartidaDTO d = new AsientoRequest.PartidaDTO();
+            d.cuentaId = disponibles.get(rnd.nextInt(disponibles.size()));
+            d.debe = BigDecimal.valueOf(1 + rnd.nextLong(1_000_000), 2);
+            total += d.debe.unscaledValue().longValue();
+            req.partidas.add(d);
+        }
+        AsientoRequest.PartidaDTO h = new AsientoRequest.PartidaDTO();
+        h.cuentaId = disponibles.get(rnd.nextInt(disponibles.size()));
+        h.haber = BigDecimal.valueOf(total, 2);
+        req.partidas.add(h);
+        return req;
+    }
+
+    /** Sin rango, con los dos limites y con uno solo: lo mismo que la BD */
+    private void igualQueLaBd() {
+        LocalDate[][] rangos = {{null, null}, {INICIO.plusDays(10), INICIO.plusDays(40)},
+                {null, INICIO.plusDays(25)}, {INICIO.plusDays(30), null}};
+        for (LocalDate[] r : rangos) {
+            List<TotalCuenta> foto = instantanea.totales(r[0], r[1]).orElseThrow();
+            assertThat(foto).as("rango %s a %s", r[0], r[1])
+                    .usingRecursiveComparison()
+                    .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                    .isEqualTo(partidaRepo.totalesPorCuentaEntre(r[0], r[1]));
+        }
+    }
+
+    @Test
+    void asientosDespuesDeLaFotoEntranPorElDelta() {
+        instantanea.reconstruir();
+        igualQueLaBd();
+
+        cuenta("6101"); // una cuenta que la foto no tiene
+        for (int i = 0; i < 30; i++) asientos.crear(asiento(List.of("1101", "4101", "6101")));
+        igualQueLaBd();
+    }
+
+    @Test
+    void edicionesYBorradosDespuesDeLaFoto() {
+        List<Long> ids = asientos.crearLote(List.of(asiento(CUENTAS), asiento(CUENTAS), asiento(CUENTAS),
+                asiento(CUENTAS), asiento(CUENTAS), asiento(CUENTAS))).items().stream().map(i -> i.id()).toList();
+        instantanea.reconstruir();
+
+        // otra fecha, otras cuentas, mas o menos partidas: cambia de lugar en el rango
+        for (Long id : ids.subList(0, 4)) {
+            Asiento a = asientos.findById(id);
+            AsientoRequest req = asiento(CUENTAS);
+            req.version = a.getVersion();
+            asientos.actualizar(id, req);
+        }
+        // y solo el importe, misma fecha y cuentas: la edicion conserva los ids de partida
+        Asiento mismo = asientos.findById(ids.get(4));
+        AsientoRequest importe = new AsientoRequest();
+        importe.fecha = mismo.getFecha();
+        importe.descripcion = mismo.getDescripcion();
+        importe.partidas = jdbc.query("SELECT cuenta_id, debe, haber FROM partidas WHERE asiento_id = ? ORDER BY id",
+                (rs, i) -> {
+                    AsientoRequest.PartidaDTO dto = new AsientoRequest.PartidaDTO();
+                    dto.cuentaId = rs.getString("cuenta_id");
+                    dto.debe = rs.getBigDecimal("debe").multiply(BigDecimal.TEN);
+                    dto.haber = rs.getBigDecimal("haber").multiply(BigDecimal.TEN);
+                    return dto;
+                }, mismo.getId());
+        asientos.actualizar(ids.get(4), importe);
+        asientos.eliminar(ids.get(5));
+        igualQueLaBd();
+
+        instantanea.reconstruir(); // y la foto nueva, con el delta ya absorbido
+        igualQueLaBd();
+    }
+
+    @Test
+    void fotoNuevaMientrasEntranAsientos() throws Exception {
+        instantanea.reconstruir();
+        AtomicBoolean cargando = new AtomicBoolean(true);
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> carga = hilos.submit(() -> {
+                try {
+                    for (int i = 0; i < 80; i++) {
+                        Asiento a = asientos.crear(asiento(CUENTAS));
+                        if (i % 4 == 0) asientos.eliminar(a.getId());
+                    }
+                } finally {
+                    cargando.set(false);
+                }
+            });
+            Future<?> fotos = hilos.submit(() -> {
+                while (cargando.get()) instantanea.reconstruir();
+            });
+            carga.get();
+            fotos.get();
+        } finally {
+            hilos.shutdownNow();
+        }
+        igualQueLaBd();
+    }
+}
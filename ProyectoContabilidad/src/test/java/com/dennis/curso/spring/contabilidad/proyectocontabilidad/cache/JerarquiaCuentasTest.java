@@ -0,0 +1,59 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JerarquiaCuentasTest {
+
+    private JerarquiaCuentas jerarquia;
+
+    @BeforeEach
+    void setUp() {
+        jerarquia = new JerarquiaCuentas();
+        jerarquia.reemplazarTodo(List.of("1", "11", "1101", "1102", "12", "1201", "2", "2101"));
+    }
+
+    @Test
+    void esHoja() {
+        assertThat(jerarquia.esHoja("1101")).isTrue();
+        assertThat(jerarquia.esHoja("2101")).isTrue();
+        assertThat(jerarquia.esHoja("11")).isFalse();
+        assertThat(jerarquia.esHoja("2")).isFalse();
+        assertThat(jerarquia.esHoja("9")).isFalse();
+    }
+
+    @Test
+    void ancestrosSoloIncluyeCuentasExistentes() {
+        assertThat(jerarquia.ancestros("1101")).containsExactly("1", "11");
+        assertThat(jerarquia.ancestros("2101")).containsExactly("2"); // "21" no es cuenta
+        assertThat(jerarquia.ancestros("1")).isEmpty();
+    }
+
+    @Test
+    void hijosSaltaPrefijosQueNoSonCuenta() {
+        assertThat(jerarquia.hijos("1")).containsExactly("11", "12");
+        assertThat(jerarquia.hijos("2")).containsExactly("2101");
+        assertThat(jerarquia.hijos("1101")).isEmpty();
+    }
+
+    @Test
+    void subarbolOrdenadoIncluyeLaPropia() {
+        assertThat(jerarquia.subarbol("11")).containsExactly("11", "1101", "1102");
+        assertThat(jerarquia.subarbol("9")).isEmpty();
+    }
+
+    @Test
+    void quitarActualizaHojasYRamas() {
+        jerarquia.quitar("1201");
+        assertThat(jerarquia.esHoja("12")).isTrue();
+        assertThat(jerarquia.subarbol("1")).containsExactly("1", "11", "1101", "1102", "12");
+
+        jerarquia.quitar("11");
+        assertThat(jerarquia.ancestros("1101")).containsExactly("1");
+        assertThat(jerarquia.hijos("1")).containsExactly("1101", "1102", "12");
+    }
+}
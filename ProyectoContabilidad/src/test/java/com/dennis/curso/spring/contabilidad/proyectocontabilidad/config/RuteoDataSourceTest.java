@@ -0,0 +1,121 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.config;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Dos H2 en memoria hacen de primaria y replica; la "replicacion" del latido se hace a mano */
+class RuteoDataSourceTest {
+
+    private JdbcTemplate primaria;
+    private JdbcTemplate replica;
+    private VersionLibro version;
+    private MonitorReplica monitor;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate lectura;
+    private TransactionTemplate escritura;
+
+    @BeforeEach
+    void preparar() {
+        JdbcDataSource p = base("primaria");
+        JdbcDataSource r = base("replica");
+        primaria = new JdbcTemplate(p);
+        replica = new JdbcTemplate(r);
+
+        version = new VersionLibro();
+        RuteoDataSource ruteo = new RuteoDataSource(version);
+        ruteo.setTargetDataSources(Map.of(RuteoDataSource.Destino.PRIMARIA, p, RuteoDataSource.Destino.REPLICA, r));
+        ruteo.setDefaultTargetDataSource(p);
+        ruteo.afterPropertiesSet();
+        monitor = new MonitorReplica(p, r, ruteo, Duration.ofSeconds(10), Duration.ofSeconds(1));
+
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(ruteo);
+        jdbc = new JdbcTemplate(proxy);
+        DataSourceTransactionManager tm = new DataSourceTransactionManager(proxy);
+        lectura = new TransactionTemplate(tm);
+        lectura.setReadOnly(true);
+        escritura = new TransactionTemplate(tm);
+    }
+
+    private static JdbcDataSource base(String nombre) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + nombre + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate t = new JdbcTemplate(ds);
+        t.execute("CREATE TABLE origen (nombre VARCHAR(20))");
+        t.update("INSERT INTO origen VALUES (?)", nombre);
+        t.execute("CREATE TABLE latido_replica (id INT PRIMARY KEY, momento BIGINT NOT NULL)");
+        t.update("INSERT INTO latido_replica VALUES (1, 0)");
+        return ds;
+    }
+
+    private String leer(TransactionTemplate tx) {
+        return tx.execute(s -> jdbc.queryForObject("SELECT nombre FROM origen", String.class));
+    }
+
+    private void replicarLatido() {
+        Long momento = primaria.queryForObject("SELECT momento FROM latido_replica WHERE id = 1", Long.class);
+        replica.update("UPDATE latido_replica SET momento = ? WHERE id = 1", momento);
+    }
+
+    @Test
+    void sinRevisarTodoVaALaPrimaria() {
+        assertThat(leer(lectura)).isEqualTo("primaria");
+        assertThat(leer(escritura)).isEqualTo("primaria");
+    }
+
+    @Test
+    void readOnlyVaALaReplicaAlDia() {
+        monitor.revisar();
+        replicarLatido();
+        monitor.revisar();
+
+        assertThat(leer(lectura)).isEqualTo("replica");
+        assertThat(leer(escritura)).isEqualTo("primaria");
+        assertThat(jdbc.queryForObject("SELECT nombre FROM origen", String.class)).isEqualTo("primaria"); // sin transaccion
+    }
+
+    @Test
+    void replicaAtrasadaVuelveALaPrimaria() {
+        replica.update("UPDATE latido_replica SET momento = ? WHERE id = 1", System.currentTimeMillis() - 60_000);
+        monitor.revisar();
+        assertThat(leer(lectura)).isEqualTo("primaria");
+    }
+
+    @Test
+    void esperaQueLaReplicaTengaElUltimoCambio() {
+        monitor.revisar();
+        replicarLatido();
+        monitor.revisar();
+        assertThat(leer(lectura)).isEqualTo("replica");
+
+        version.cambio(); // se confirmo un asiento: hasta que la replica lo tenga se lee de la primaria
+        assertThat(leer(lectura)).isEqualTo("primaria");
+
+        monitor.revisar(); // escribe un latido posterior al cambio
+        replicarLatido();
+        monitor.revisar();
+        assertThat(leer(lectura)).isEqualTo("replica");
+    }
+
+    @Test
+    void replicaCaidaVuelveALaPrimaria() {
+        monitor.revisar();
+        replicarLatido();
+        monitor.revisar();
+        replica.execute("DROP TABLE latido_replica");
+
+        monitor.revisar();
+        assertThat(leer(lectura)).isEqualTo("primaria");
+    }
+}
@@ -0,0 +1,70 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AcumuladorCentavosTest {
+
+    @Test
+    void igualQueSumarConBigDecimal() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int vuelta = 0; vuelta < 200; vuelta++) {
+            AcumuladorCentavos acumulador = new AcumuladorCentavos();
+            BigDecimal esperado = BigDecimal.ZERO;
+            for (int i = 0; i < 500; i++) {
+                BigDecimal importe = BigDecimal.valueOf(rnd.nextLong(-10_000_000_000L, 10_000_000_000L), rnd.nextInt(3));
+                if (rnd.nextBoolean()) {
+                    acumulador.sumar(importe);
+                    esperado = esperado.add(importe);
+                } else {
+                    acumulador.restar(importe);
+                    esperado = esperado.subtract(importe);
+                }
+            }
+            // equals compara tambien la escala: el JSON sale igual
+            assertThat(acumulador.valor()).isEqualTo(esperado);
+            assertThat(acumulador.signo()).isEqualTo(esperado.signum());
+            // el chequeo de equilibrio del balance redondea a 2 decimales, con la suma exacta da lo mismo
+            assertThat(acumulador.valor().setScale(2, RoundingMode.HALF_UP))
+                    .isEqualTo(esperado.setScale(2, RoundingMode.HALF_UP));
+        }
+    }
+
+    @Test
+    void sinSumasEsCeroSinDecimales() {
+        assertThat(new AcumuladorCentavos().valor()).isEqualTo(BigDecimal.ZERO);
+        assertThat(new AcumuladorCentavos().sumar(BigDecimal.ZERO).valor()).isEqualTo(BigDecimal.ZERO);
+        assertThat(new AcumuladorCentavos().sumar(new BigDecimal("0.00")).valor()).isEqualTo(new BigDecimal("0.00"));
+    }
+
+    @Test
+    void desbordeSigueEnBigDecimal() {
+        BigDecimal maximo = BigDecimal.valueOf(Long.MAX_VALUE / 2, 2);
+        AcumuladorCentavos acumulador = new AcumuladorCentavos().sumar(maximo).sumar(maximo).sumar(maximo);
+        assertThat(acumulador.valor()).isEqualTo(maximo.add(maximo).add(maximo));
+
+        AcumuladorCentavos negativo = new AcumuladorCentavos().restar(maximo).restar(maximo).restar(maximo);
+        assertThat(negativo.valor()).isEqualTo(maximo.negate().subtract(maximo).subtract(maximo));
+    }
+
+    @Test
+    void masDeDosDecimalesSigueEnBigDecimal() {
+        AcumuladorCentavos acumulador = new AcumuladorCentavos()
+                .sumar(new BigDecimal("10.50"))
+                .sumar(new BigDecimal("0.005"))
+                .sumar(new BigDecimal("1.25"));
+        assertThat(acumulador.valor()).isEqualTo(new BigDecimal("11.755"));
+    }
+
+    @Test
+    void reiniciarVuelveACero() {
+        AcumuladorCentavos acumulador = new AcumuladorCentavos().sumar(new BigDecimal("0.001"));
+        acumulador.reiniciar();
+        assertThat(acumulador.sumar(new BigDecimal("2.50")).valor()).isEqualTo(new BigDecimal("2.50"));
+    }
+}
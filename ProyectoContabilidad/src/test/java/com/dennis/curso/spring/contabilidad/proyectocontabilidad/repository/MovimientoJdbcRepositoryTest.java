@@ -0,0 +1,136 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository.Posicion;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Saldo acumulado y paginas del mayor por cuenta sobre un H2 en modo SQL Server como el del benchmark */
+class MovimientoJdbcRepositoryTest {
+
+    private static final LocalDate INICIO = LocalDate.of(2025, 1, 1);
+
+    private JdbcTemplate jdbc;
+    private MovimientoJdbcRepository repo;
+    private long partidaId;
+
+    @BeforeEach
+    void preparar() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:mayor-" + UUID.randomUUID() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE asientos (id BIGINT PRIMARY KEY, fecha DATE, descripcion VARCHAR(500))");
+        jdbc.execute("CREATE TABLE partidas (id BIGINT PRIMARY KEY, asiento_id BIGINT NOT NULL, cuenta_id VARCHAR(20) NOT NULL, " +
+                "debe NUMERIC(18,2), haber NUMERIC(18,2), fecha DATE, saldo_acumulado NUMERIC(18,2))");
+        repo = new MovimientoJdbcRepository(ds, 100);
+
+        // ids de asiento que no siguen a la fecha, como cuando se carga un asiento atrasado
+        SplittableRandom rnd = new SplittableRandom(7);
+        for (long asiento = 1; asiento <= 60; asiento++) {
+            LocalDate fecha = INICIO.plusDays(rnd.nextInt(20));
+            asiento(asiento, fecha);
+            long importe = 1 + rnd.nextLong(100_000);
+            partida(asiento, fecha, rnd.nextBoolean() ? "1101" : "1102", importe, 0);
+            partida(asiento, fecha, rnd.nextBoolean() ? "1101" : "4101", 0, importe);
+        }
+    }
+
+    private void asiento(long id, LocalDate fecha) {
+        jdbc.update("INSERT INTO asientos (id, fecha, descripcion) VALUES (?, ?, ?)", id, fecha == null ? null : Date.valueOf(fecha), "Asiento " + id);
+    }
+
+    private long partida(long asiento, LocalDate fecha, String cuenta, long debe, long haber) {
+        jdbc.update("INSERT INTO partidas (id, asiento_id, cuenta_id, debe, haber, fecha) VALUES (?, ?, ?, ?, ?, ?)",
+                ++partidaId, asiento, cuenta, BigDecimal.valueOf(debe, 2), BigDecimal.valueOf(haber, 2),
+                fecha == null ? null : Date.valueOf(fecha));
+        return partidaId;
+    }
+
+    /** Lo que guardo la BD contra la suma corrida hecha de nuevo en Java, en el orden del mayor */
+    private void verificarCuenta(String cuenta) {
+        BigDecimal saldo = BigDecimal.ZERO;
+        for (var fila : jdbc.queryForList("SELECT debe, haber, saldo_acumulado FROM partidas WHERE cuenta_id = ? " +
+                "ORDER BY fecha, asiento_id, id", cuenta)) {
+            saldo = saldo.add((BigDecimal) fila.get("debe")).subtract((BigDecimal) fila.get("haber"));
+            assertThat((BigDecimal) fila.get("saldo_acumulado")).isEqualByComparingTo(saldo);
+        }
+    }
+
+    @Test
+    void repararTodoDaLaSumaCorridaPorCuenta() {
+        assertThat(repo.repararSaldos()).isEqualTo((int) partidaId);
+        verificarCuenta("1101");
+        verificarCuenta("1102");
+        verificarCuenta("4101");
+        assertThat(repo.repararSaldos()).isZero(); // lo que ya esta bien no se vuelve a escribir
+    }
+
+    @Test
+    void asientoAlFinalSoloTocaSusFilas() {
+        repo.repararSaldos();
+        asiento(100, INICIO.plusDays(30));
+        long id = partida(100, INICIO.plusDays(30), "1101", 500, 0);
+
+        assertThat(repo.repararSaldos("1101", new Posicion(INICIO.plusDays(30), 100, id))).isEqualTo(1);
+        verificarCuenta("1101");
+    }
+
+    @Test
+    void asientoAtrasadoYBorradoRecalculanDesdeSuPosicion() {
+        repo.repararSaldos();
+        LocalDate atrasada = INICIO.plusDays(3);
+        asiento(101, atrasada);
+        long id = partida(101, atrasada, "1102", 777, 0);
+        repo.repararSaldos("1102", new Posicion(atrasada, 101, id));
+        verificarCuenta("1102");
+
+        var primera = jdbc.queryForMap("SELECT id, asiento_id, fecha FROM partidas WHERE cuenta_id = '1101' " +
+                "ORDER BY fecha, asiento_id, id OFFSET 0 ROWS FETCH NEXT 1 ROWS ONLY");
+        jdbc.update("DELETE FROM partidas WHERE id = ?", primera.get("id"));
+        repo.repararSaldos("1101", new Posicion(((Date) primera.get("fecha")).toLocalDate(),
+                (Long) primera.get("asiento_id"), (Long) primera.get("id")));
+        verificarCuenta("1101");
+    }
+
+    @Test
+    void partidasSinFechaVanPrimero() {
+        asiento(102, null);
+        long id = partida(102, null, "4101", 0, 999);
+        repo.repararSaldos("4101", new Posicion(null, 102, id));
+        verificarCuenta("4101");
+    }
+
+    @Test
+    void paginasRecorrenElRangoSinRepetirNiSaltear() {
+        repo.repararSaldos();
+        LocalDate desde = INICIO.plusDays(5);
+        LocalDate hasta = INICIO.plusDays(14);
+        List<Long> esperado = jdbc.queryForList("SELECT id FROM partidas WHERE cuenta_id = '1101' AND fecha BETWEEN ? AND ? " +
+                "ORDER BY fecha, asiento_id, id", Long.class, Date.valueOf(desde), Date.valueOf(hasta));
+
+        List<Long> leidos = new ArrayList<>();
+        Posicion despues = null;
+        while (true) {
+            List<Posicion> pagina = repo.paginaMayor("1101", desde, hasta, despues, 4, (rs, i) -> {
+                leidos.add(rs.getLong("id"));
+                return new Posicion(rs.getDate("fecha").toLocalDate(), rs.getLong("asiento_id"), rs.getLong("id"));
+            });
+            if (pagina.isEmpty()) break;
+            assertThat(pagina.size()).isLessThanOrEqualTo(4);
+            despues = pagina.get(pagina.size() - 1);
+        }
+        assertThat(esperado).isNotEmpty();
+        assertThat(leidos).isEqualTo(esperado);
+    }
+}
@@ -0,0 +1,162 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Periodo;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.SaldoPeriodoRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.CuentaService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.PeriodoService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Un asiento y el cierre de su periodo a la vez: o el asiento entra en el saldo guardado o se rechaza */
+@SpringBootTest
+@ActiveProfiles("prueba")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class) // enero se cierra antes que marzo, un cierre congela lo anterior
+class CierrePeriodoConcurrenteTest {
+
+    @Autowired
+    private PeriodoService periodos;
+    @Autowired
+    private AsientoService asientos;
+    @Autowired
+    private CuentaService cuentas;
+    @Autowired
+    private SaldoPeriodoRepository saldoPeriodoRepo;
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private final ExecutorService hilos = Executors.newFixedThreadPool(2);
+    private Periodo enero;
+
+    @BeforeAll
+    void cuentas() {
+        for (String id : List.of("1101", "4101")) {
+            Cuenta c = new Cuenta();
+            c.setId(id);
+            c.setNombre("Cuenta " + id);
+            c.setTipo("Activo");
+            cuentas.save(c);
+        }
+    }
+
+    @AfterAll
+    void cerrarHilos() {
+        hilos.shutdownNow();
+    }
+
+    private Periodo periodo(int mes) {
+        Periodo p = new Periodo();
+        p.setNombre("2025-" + mes);
+        p.setFechaInicio(LocalDate.of(2025, mes, 1));
+        p.setFechaFin(LocalDate.of(2025, mes, 1).plusMonths(1).minusDays(1));
+        return periodos.crear(p);
+    }
+
+    private static AsientoRequest asiento(LocalDate fecha, String importe) {
+        AsientoRequest req = new AsientoRequest();
+        req.fecha = fecha;
+        req.descripcion = "Venta " + fecha;
+        AsientoRequest.PartidaDTO d = new AsientoRequest.PartidaDTO();
+        d.cuentaId = "1101";
+        d.debe = new BigDecimal(importe);
+        AsientoRequest.PartidaDTO h = new AsientoRequest.PartidaDTO();
+        h.cuentaId = "4101";
+        h.haber = new BigDecimal(importe);
+        req.partidas = List.of(d, h);
+        return req;
+    }
+
+    private BigDecimal debeGuardado(Periodo p) {
+        return saldoPeriodoRepo.totalesDelPeriodo(p.getId()).stream()
+                .filter(t -> t.cuentaId().equals("1101")).map(TotalCuenta::debe).findFirst().orElse(BigDecimal.ZERO);
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    @Order(1)
+    void elCierreEsperaAlAsientoEnCursoYLoIncluye() throws Exception {
+        enero = periodo(1);
+        asientos.crear(asiento(LocalDate.of(2025, 1, 5), "100.00"));
+
+        CountDownLatch escrito = new CountDownLatch(1);
+        CountDownLatch confirmar = new CountDownLatch(1);
+        Future<?> asiento = hilos.submit(() -> new TransactionTemplate(txManager).executeWithoutResult(s -> {
+            asientos.crear(asiento(LocalDate.of(2025, 1, 20), "25.50"));
+            escrito.countDown();
+            esperar(confirmar); // validado y escrito, todavia sin commit
+        }));
+        assertThat(escrito.await(10, TimeUnit.SECONDS)).isTrue();
+
+        Future<Periodo> cierre = hilos.submit(() -> periodos.cerrar(enero.getId()));
+        Thread.sleep(300);
+        assertThat(cierre.isDone()).as("el cierre espera al asiento").isFalse();
+
+        confirmar.countDown();
+        asiento.get(10, TimeUnit.SECONDS);
+        assertThat(cierre.get(10, TimeUnit.SECONDS).getCerrado()).isTrue();
+        assertThat(debeGuardado(enero)).isEqualByComparingTo("125.50");
+    }
+
+    @Test
+    @Order(2)
+    void elAsientoQueLlegaDuranteElCierreSeRechaza() throws Exception {
+        Periodo marzo = periodo(3);
+        asientos.crear(asiento(LocalDate.of(2025, 3, 5), "40.00"));
+
+        CountDownLatch cerrado = new CountDownLatch(1);
+        CountDownLatch confirmar = new CountDownLatch(1);
+        Future<?> cierre = hilos.submit(() -> new TransactionTemplate(txManager).executeWithoutResult(s -> {
+            periodos.cerrar(marzo.getId());
+            cerrado.countDown();
+            esperar(confirmar);
+        }));
+        assertThat(cerrado.await(10, TimeUnit.SECONDS)).isTrue();
+
+        Future<?> asiento = hilos.submit(() -> asientos.crear(asiento(LocalDate.of(2025, 3, 28), "7.00")));
+        Thread.sleep(300);
+        assertThat(asiento.isDone()).as("el asiento espera al cierre").isFalse();
+
+        confirmar.countDown();
+        cierre.get(10, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> asiento.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class)
+                .hasStackTraceContaining("periodo cerrado");
+        assertThat(debeGuardado(marzo)).isEqualByComparingTo(debeGuardado(enero).add(new BigDecimal("40.00")));
+    }
+}
@@ -0,0 +1,94 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotenciaServiceImplTest {
+
+    // solo en memoria: sin persistencia no se usa el repositorio
+    private final IdempotenciaServiceImpl servicio = new IdempotenciaServiceImpl(new ObjectMapper(), null, false,
+            Duration.ofHours(1), Duration.ofSeconds(5), 100);
+
+    @Test
+    void repeticionDevuelveLaMismaRespuestaSinEjecutar() {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        ResponseEntity<?> primera = servicio.ejecutar("POST /x", "k1", Map.of("a", 1),
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", ejecuciones.incrementAndGet())));
+        ResponseEntity<?> segunda = servicio.ejecutar("POST /x", "k1", Map.of("a", 1),
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", ejecuciones.incrementAndGet())));
+
+        assertThat(ejecuciones).hasValue(1);
+        assertThat(segunda.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(segunda.getBody()).isEqualTo("{\"id\":1}");
+        assertThat(segunda.getHeaders().getFirst(IdempotenciaServiceImpl.REPETIDA)).isEqualTo("true");
+        assertThat(primera.getHeaders().getFirst(IdempotenciaServiceImpl.REPETIDA)).isNull();
+    }
+
+    @Test
+    void mismaClaveConOtraPeticionEs422() {
+        servicio.ejecutar("POST /x", "k2", Map.of("a", 1), () -> ResponseEntity.ok(Map.of()));
+        assertThatThrownBy(() -> servicio.ejecutar("POST /x", "k2", Map.of("a", 2), () -> ResponseEntity.ok(Map.of())))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+    }
+
+    @Test
+    void concurrentesEsperanALaPrimera() throws Exception {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        CountDownLatch adentro = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<ResponseEntity<?>> primera = pool.submit(() -> servicio.ejecutar("POST /x", "k3", "p", () -> {
+                ejecuciones.incrementAndGet();
+                adentro.countDown();
+                try {
+                    soltar.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return ResponseEntity.ok(Map.of("id", 7));
+            }));
+            adentro.await();
+            Future<ResponseEntity<?>> otra = pool.submit(() -> servicio.ejecutar("POST /x", "k3", "p",
+                    () -> ResponseEntity.ok(Map.of("id", ejecuciones.incrementAndGet()))));
+            Thread.sleep(100); // la segunda ya esta esperando
+            soltar.countDown();
+
+            assertThat(primera.get(5, TimeUnit.SECONDS).getBody()).isEqualTo(Map.of("id", 7));
+            assertThat(otra.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("{\"id\":7}");
+            assertThat(ejecuciones).hasValue(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void siFallaLaClaveSeLibera() {
+        assertThatThrownBy(() -> servicio.ejecutar("POST /x", "k4", "p", () -> {
+            throw new IllegalArgumentException("invalido");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        ResponseEntity<?> reintento = servicio.ejecutar("POST /x", "k4", "p", () -> ResponseEntity.ok(Map.of("id", 1)));
+        assertThat(reintento.getBody()).isEqualTo(Map.of("id", 1));
+    }
+
+    @Test
+    void sinClaveSoloEjecuta() {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        servicio.ejecutar("POST /x", null, "p", () -> ResponseEntity.ok(ejecuciones.incrementAndGet()));
+        servicio.ejecutar("POST /x", null, "p", () -> ResponseEntity.ok(ejecuciones.incrementAndGet()));
+        assertThat(ejecuciones).hasValue(2);
+    }
+}
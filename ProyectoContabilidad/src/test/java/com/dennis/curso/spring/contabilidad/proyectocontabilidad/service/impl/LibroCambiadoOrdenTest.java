@@ -0,0 +1,127 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.InstantaneaLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.LibroCambiado;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.CuentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Al confirmar un asiento: la foto ya tiene el delta antes de que suba la version, y el aviso sale despues */
+@SpringBootTest(properties = {
+        "app.instantanea.habilitada=true",
+        "app.instantanea.intervalo=PT1H"
+})
+@ActiveProfiles("prueba")
+@Import(LibroCambiadoOrdenTest.Testigo.class)
+class LibroCambiadoOrdenTest {
+
+    @Autowired
+    private Testigo testigo;
+    @Autowired
+    private InstantaneaLibro instantanea;
+    @Autowired
+    private AsientoService asientos;
+    @Autowired
+    private CuentaService cuentas;
+
+    @DynamicPropertySource
+    static void archivo(DynamicPropertyRegistry registro) {
+        registro.add("app.instantanea.archivo", () -> {
+            try {
+                return Files.createTempDirectory("instantanea").resolve("libro.col").toString();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /** Mira el libro entre los oyentes del commit, en los lugares justo despues de la foto y de la version */
+    static class Testigo {
+        private final VersionLibro version;
+        private final InstantaneaLibro instantanea;
+        private long publicado;
+        private Long versionConLaFoto;
+        private BigDecimal debeEnLaFoto;
+        private Long versionAlAvisar;
+        private Integer enCursoAlAvisar;
+
+        Testigo(VersionLibro version, InstantaneaLibro instantanea) {
+            this.version = version;
+            this.instantanea = instantanea;
+        }
+
+        @EventListener
+        void publicado(LibroCambiado cambio) {
+            publicado = version.actual();
+        }
+
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        @Order(LibroCambiado.INSTANTANEA + 1)
+        void despuesDeLaFoto(LibroCambiado cambio) {
+            versionConLaFoto = version.actual();
+            debeEnLaFoto = instantanea.totales(null, null).orElseThrow().stream()
+                    .filter(t -> t.cuentaId().equals("7101")).map(TotalCuenta::debe).findFirst().orElse(null);
+        }
+
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        @Order(LibroCambiado.EVENTOS)
+        void alAvisar(LibroCambiado cambio) {
+            versionAlAvisar = version.actual();
+            enCursoAlAvisar = version.enCurso();
+        }
+    }
+
+    private void cuenta(String id) {
+        Cuenta c = new Cuenta();
+        c.setId(id);
+        c.setNombre("Cuenta " + id);
+        c.setTipo("Activo");
+        cuentas.save(c);
+    }
+
+    @Test
+    void laFotoAntesQueLaVersionYElAvisoDespues() {
+        cuenta("1101");
+        cuenta("7101");
+        instantanea.reconstruir();
+
+        AsientoRequest req = new AsientoRequest();
+        req.fecha = LocalDate.of(2025, 4, 1);
+        req.descripcion = "Orden";
+        AsientoRequest.PartidaDTO d = new AsientoRequest.PartidaDTO();
+        d.cuentaId = "7101";
+        d.debe = new BigDecimal("12.34");
+        AsientoRequest.PartidaDTO h = new AsientoRequest.PartidaDTO();
+        h.cuentaId = "1101";
+        h.haber = new BigDecimal("12.34");
+        req.partidas = List.of(d, h);
+        asientos.crear(req);
+
+        assertThat(testigo.versionConLaFoto).isEqualTo(testigo.publicado); // la version todavia no subio
+        assertThat(testigo.debeEnLaFoto).isEqualByComparingTo("12.34");    // y la foto ya tiene el asiento
+        assertThat(testigo.versionAlAvisar).isEqualTo(testigo.publicado + 1);
+        assertThat(testigo.enCursoAlAvisar).isZero();
+    }
+}
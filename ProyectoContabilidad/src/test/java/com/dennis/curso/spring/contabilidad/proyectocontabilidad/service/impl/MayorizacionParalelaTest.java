@@ -0,0 +1,151 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.CatalogoCuentas;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.cache.VersionLibro;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.CuentaMayor;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.TotalCuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.MovimientoJdbcRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.repository.PartidaRepository;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.CuentaService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.MayorService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Los tramos en paralelo contra la consulta secuencial, con un umbral que manda todo al paralelo */
+@SpringBootTest(properties = {
+        "app.mayorizacion.paralela=true",
+        "app.mayorizacion.umbral=1",
+        "app.mayorizacion.hilos=2"
+})
+@ActiveProfiles("prueba")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MayorizacionParalelaTest {
+
+    private static final LocalDate INICIO = LocalDate.of(2025, 1, 1);
+    private static final List<String> CUENTAS = List.of("1101", "1102", "1201", "2101", "2102", "3101", "4101", "4102", "5101");
+
+    @Autowired
+    private MayorizacionParalela paralela;
+    @Autowired
+    private MayorService mayorService;
+    @Autowired
+    private AsientoService asientos;
+    @Autowired
+    private CuentaService cuentas;
+    @Autowired
+    private PartidaRepository partidaRepo;
+    @Autowired
+    private MovimientoJdbcRepository movimientoRepo;
+    @Autowired
+    private CatalogoCuentas catalogo;
+    @Autowired
+    private VersionLibro version;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    @BeforeAll
+    void cargarLibro() {
+        for (String id : CUENTAS) {
+            if (cuentas.exists(id)) continue;
+            Cuenta c = new Cuenta();
+            c.setId(id);
+            c.setNombre("Cuenta " + id);
+            c.setTipo("Activo");
+            cuentas.save(c);
+        }
+        SplittableRandom rnd = new SplittableRandom(16);
+        List<AsientoRequest> lote = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            AsientoRequest req = new AsientoRequest();
+            req.fecha = INICIO.plusDays(rnd.nextInt(90));
+            req.descripcion = "Asiento " + i;
+            req.partidas = new ArrayList<>();
+            long total = 0;
+            for (int p = 0; p < 1 + rnd.nextInt(3); p++) {
+                AsientoRequest.PartidaDTO d = new AsientoRequest.PartidaDTO();
+                d.cuentaId = CUENTAS.get(rnd.nextInt(CUENTAS.size()));
+                d.debe = BigDecimal.valueOf(1 + rnd.nextLong(500_000), 2);
+                total += d.debe.unscaledValue().longValue();
+                req.partidas.add(d);
+            }
+            AsientoRequest.PartidaDTO h = new AsientoRequest.PartidaDTO();
+            h.cuentaId = CUENTAS.get(rnd.nextInt(CUENTAS.size()));
+            h.haber = BigDecimal.valueOf(total, 2);
+            req.partidas.add(h);
+            lote.add(req);
+        }
+        assertThat(asientos.crearLote(lote).fallidos()).isZero();
+    }
+
+    private static void mismosTotales(List<TotalCuenta> obtenidos, List<TotalCuenta> esperados) {
+        List<TotalCuenta> a = new ArrayList<>(obtenidos);
+        List<TotalCuenta> b = new ArrayList<>(esperados);
+        a.sort(Comparator.comparing(TotalCuenta::cuentaId));
+        b.sort(Comparator.comparing(TotalCuenta::cuentaId));
+        assertThat(a).isNotEmpty();
+        assertThat(a).usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(b);
+    }
+
+    @Test
+    void totalesPorTramosDanLoMismoQueElGroupBy() {
+        assertThat(paralela.conviene()).isTrue();
+        mismosTotales(paralela.totales(null, null).orElseThrow(), partidaRepo.totalesPorCuenta());
+
+        LocalDate desde = INICIO.plusDays(20);
+        LocalDate hasta = INICIO.plusDays(50);
+        mismosTotales(paralela.totales(desde, hasta).orElseThrow(), partidaRepo.totalesPorCuentaEntre(desde, hasta));
+        mismosTotales(paralela.totales(null, hasta).orElseThrow(), partidaRepo.totalesPorCuentaEntre(null, hasta));
+    }
+
+    @Test
+    void mayorPorSubarbolDaLoMismoQueElSecuencial() throws Exception {
+        MayorizacionParalela apagada = new MayorizacionParalela(movimientoRepo, catalogo, version, txManager, false, 1, 2);
+        MayorService secuencial = new MayorServiceImpl(movimientoRepo, objectMapper, apagada, catalogo);
+
+        for (LocalDate[] rango : new LocalDate[][]{{null, null}, {INICIO.plusDays(10), INICIO.plusDays(40)}}) {
+            Map<String, CuentaMayor> enParalelo = mayorService.generarMayor(rango[0], rango[1]);
+            Map<String, CuentaMayor> esperado = secuencial.generarMayor(rango[0], rango[1]);
+            assertThat(enParalelo).isNotEmpty();
+            // mismo orden de cuentas y de movimientos, mismos importes y saldos
+            assertThat(objectMapper.writeValueAsString(enParalelo)).isEqualTo(objectMapper.writeValueAsString(esperado));
+        }
+        apagada.cerrar();
+    }
+
+    @Test
+    void conAsientosSinTerminarNoUsaLosTramos() {
+        new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            version.cambio(); // como un asiento que todavia no confirma
+            assertThat(paralela.conviene()).isFalse();
+            assertThat(paralela.totales(null, null)).isEmpty();
+            assertThat(paralela.porSubarbol((desde, hasta) -> desde)).isEmpty();
+            status.setRollbackOnly();
+        });
+        assertThat(version.enCurso()).isZero();
+        assertThat(paralela.conviene()).isTrue();
+    }
+}
@@ -0,0 +1,99 @@
+package com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.impl;
+
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.AsientoRequest;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.model.Cuenta;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.AsientoService;
+import com.dennis.curso.spring.contabilidad.proyectocontabilidad.service.CuentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Dos asientos a la vez sobre cuentas que todavia no tienen fila de saldo */
+@SpringBootTest
+@ActiveProfiles("prueba")
+class SaldoAcumuladoConcurrenteTest {
+
+    private static final LocalDate DIA = LocalDate.of(2025, 3, 10);
+
+    @Autowired
+    private AsientoService asientos;
+    @Autowired
+    private CuentaService cuentas;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private String cuenta(String id, String tipo) {
+        Cuenta c = new Cuenta();
+        c.setId(id);
+        c.setNombre("Cuenta " + id);
+        c.setTipo(tipo);
+        return cuentas.save(c).getId();
+    }
+
+    private static AsientoRequest asiento(LocalDate fecha, String debe, String haber, long centavos) {
+        AsientoRequest req = new AsientoRequest();
+        req.fecha = fecha;
+        req.descripcion = "Concurrente " + fecha;
+        AsientoRequest.PartidaDTO d = new AsientoRequest.PartidaDTO();
+        d.cuentaId = debe;
+        d.debe = BigDecimal.valueOf(centavos, 2);
+        AsientoRequest.PartidaDTO h = new AsientoRequest.PartidaDTO();
+        h.cuentaId = haber;
+        h.haber = BigDecimal.valueOf(centavos, 2);
+        req.partidas = List.of(d, h);
+        return req;
+    }
+
+    /** La fila de saldos y el saldo acumulado de cada partida contra lo que dan las partidas */
+    private void verificarCuenta(String cuenta) {
+        BigDecimal saldo = BigDecimal.ZERO;
+        for (var fila : jdbc.queryForList("SELECT debe, haber, saldo_acumulado FROM partidas WHERE cuenta_id = ? " +
+                "ORDER BY fecha, asiento_id, id", cuenta)) {
+            saldo = saldo.add((BigDecimal) fila.get("debe")).subtract((BigDecimal) fila.get("haber"));
+            assertThat((BigDecimal) fila.get("saldo_acumulado")).as("saldo acumulado de %s", cuenta).isEqualByComparingTo(saldo);
+        }
+        assertThat(jdbc.queryForObject("SELECT saldo FROM saldos_cuenta WHERE cuenta_id = ?", BigDecimal.class, cuenta))
+                .as("saldo de %s", cuenta).isEqualByComparingTo(saldo);
+    }
+
+    @Test
+    void primerosAsientosDeUnaCuentaNuevaNoChocanNiDesordenanElSaldo() throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            for (int ronda = 0; ronda < 20; ronda++) {
+                String caja = cuenta(String.valueOf(110_000 + ronda), "ACTIVO");
+                String ventas = cuenta(String.valueOf(410_000 + ronda), "INGRESO");
+                CyclicBarrier juntos = new CyclicBarrier(2);
+
+                // el segundo es atrasado: su reparacion cambia el saldo acumulado de la partida del primero
+                Future<?> primero = hilos.submit(() -> {
+                    juntos.await();
+                    return asientos.crear(asiento(DIA, caja, ventas, 10_000));
+                });
+                Future<?> atrasado = hilos.submit(() -> {
+                    juntos.await();
+                    return asientos.crear(asiento(DIA.minusDays(5), caja, ventas, 2_550));
+                });
+                primero.get();
+                atrasado.get();
+
+                verificarCuenta(caja);
+                verificarCuenta(ventas);
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+}